@@ -0,0 +1,40 @@
+package com.ghfetcher.benchmark;
+
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import reactor.core.publisher.Flux;
+
+import java.nio.ByteBuffer;
+
+final class BenchmarkBuffers {
+
+    /**
+     * Roughly the size of the chunks Reactor Netty hands to the decoders.
+     */
+    static final int NETWORK_CHUNK_SIZE = 8192;
+
+    private BenchmarkBuffers() {
+    }
+
+    static Flux<DataBuffer> chunks(final byte[] payload) {
+        int chunkCount = (payload.length + NETWORK_CHUNK_SIZE - 1) / NETWORK_CHUNK_SIZE;
+        return Flux.range(0, chunkCount)
+                .map(chunk -> {
+                    int offset = chunk * NETWORK_CHUNK_SIZE;
+                    int length = Math.min(NETWORK_CHUNK_SIZE, payload.length - offset);
+                    return DefaultDataBufferFactory.sharedInstance.wrap(ByteBuffer.wrap(payload, offset, length).slice());
+                });
+    }
+
+    static long consume(final Flux<DataBuffer> buffers) {
+        return buffers
+                .map(buffer -> {
+                    long size = buffer.readableByteCount();
+                    DataBufferUtils.release(buffer);
+                    return size;
+                })
+                .reduce(0L, Long::sum)
+                .block();
+    }
+}
@@ -0,0 +1,108 @@
+package com.ghfetcher.benchmark;
+
+import com.ghfetcher.cache.NameInterner;
+import com.ghfetcher.cache.PackedRepositories;
+import com.ghfetcher.dto.BranchWithShaDto;
+import com.ghfetcher.dto.RepositoryResponseDto;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.ref.Reference;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * Reports the retained heap per cached branch of users' results held as decoded DTO lists and as
+ * {@link PackedRepositories}. Strings are copied per user as they would be when decoded from separate responses.
+ * <p>
+ * Options are passed as {@code --name=value}: {@code users}, {@code repos} (per user) and {@code branches} (per
+ * repository). Best run with a fixed heap, e.g. {@code -Dbenchmark.jvmArgs="-Xms2g -Xmx2g"}.
+ */
+public final class CacheFootprint {
+
+    private static final String[] COMMON_BRANCHES = {"main", "master", "develop", "gh-pages", "release"};
+
+    private CacheFootprint() {
+    }
+
+    public static void main(final String[] args) {
+        Map<String, String> options = parseOptions(args);
+        int users = intOption(options, "users", 2000);
+        int repos = intOption(options, "repos", 30);
+        int branches = intOption(options, "branches", 5);
+        long totalBranches = (long) users * repos * branches;
+
+        System.out.printf("users=%d repos/user=%d branches/repo=%d%n", users, repos, branches);
+        long baseline = usedHeap();
+        List<List<RepositoryResponseDto>> decoded = new ArrayList<>(users);
+        for (int user = 0; user < users; user++) {
+            decoded.add(generate(user, repos, branches));
+        }
+        long dtoBytes = usedHeap() - baseline;
+        report("dto lists", dtoBytes, totalBranches);
+
+        NameInterner interner = new NameInterner(100_000);
+        List<PackedRepositories> packed = new ArrayList<>(users);
+        for (int user = 0; user < users; user++) {
+            packed.add(PackedRepositories.pack("user-" + user, decoded.get(user), interner));
+            decoded.set(user, null);
+        }
+        decoded = null;
+        long packedBytes = usedHeap() - baseline;
+        report("packed", packedBytes, totalBranches);
+        System.out.printf("interned names=%d, reduction=%.1fx%n", interner.size(), (double) dtoBytes / packedBytes);
+        Reference.reachabilityFence(packed);
+    }
+
+    private static List<RepositoryResponseDto> generate(final int user, final int repos, final int branches) {
+        SplittableRandom random = new SplittableRandom(user);
+        byte[] sha = new byte[20];
+        List<RepositoryResponseDto> repositories = new ArrayList<>(repos);
+        for (int repo = 0; repo < repos; repo++) {
+            List<BranchWithShaDto> repoBranches = new ArrayList<>(branches);
+            for (int branch = 0; branch < branches; branch++) {
+                random.nextBytes(sha);
+                String name = branch < COMMON_BRANCHES.length ? COMMON_BRANCHES[branch] : "feature/task-" + branch;
+                repoBranches.add(new BranchWithShaDto(new String(name), HexFormat.of().formatHex(sha)));
+            }
+            repositories.add(RepositoryResponseDto.builder()
+                    .ownerLogin("user-" + user)
+                    .repositoryName("repository-" + repo)
+                    .branches(List.copyOf(repoBranches))
+                    .build());
+        }
+        return List.copyOf(repositories);
+    }
+
+    private static void report(final String label, final long bytes, final long branches) {
+        System.out.printf("%-10s %,14d bytes  %6.1f bytes/branch%n", label, bytes, (double) bytes / branches);
+    }
+
+    private static long usedHeap() {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        long used = Long.MAX_VALUE;
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+            used = Math.min(used, memory.getHeapMemoryUsage().getUsed());
+        }
+        return used;
+    }
+
+    private static Map<String, String> parseOptions(final String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (arg.startsWith("--") && arg.contains("=")) {
+                options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+            }
+        }
+        return options;
+    }
+
+    private static int intOption(final Map<String, String> options, final String name, final int defaultValue) {
+        return options.containsKey(name) ? Integer.parseInt(options.get(name)) : defaultValue;
+    }
+}
@@ -0,0 +1,81 @@
+package com.ghfetcher.benchmark;
+
+import com.ghfetcher.codec.GithubJsonDecoder;
+import com.ghfetcher.dto.BranchWithCommitsDto;
+import com.ghfetcher.dto.RepositoryDto;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.codec.Decoder;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.json.Jackson2JsonDecoder;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decodes one page of the GitHub repositories and branches listings the way {@code bodyToFlux} does, from
+ * network-sized chunks, with the default Jackson decoder and with the field-projecting {@link GithubJsonDecoder}.
+ * Run with {@code -prof gc} to see the allocation per page.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DtoDeserializationBenchmark {
+
+    @Param({"30", "100"})
+    private int pageSize;
+
+    private final Jackson2JsonDecoder jacksonDecoder = new Jackson2JsonDecoder();
+    private final GithubJsonDecoder streamingDecoder = new GithubJsonDecoder();
+    private byte[] repositoriesPage;
+    private byte[] branchesPage;
+
+    @Setup
+    public void setUp() {
+        repositoriesPage = GithubPayloads.repositoriesPage("benchmark-user", 0, pageSize).getBytes(StandardCharsets.UTF_8);
+        branchesPage = GithubPayloads.branchesPage("benchmark-user", "repo-0", 0, pageSize).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public List<RepositoryDto> jacksonRepositories() {
+        return decode(jacksonDecoder, repositoriesPage, RepositoryDto.class);
+    }
+
+    @Benchmark
+    public List<BranchWithCommitsDto> jacksonBranches() {
+        return decode(jacksonDecoder, branchesPage, BranchWithCommitsDto.class);
+    }
+
+    @Benchmark
+    public List<RepositoryDto> streamingRepositories() {
+        return decode(streamingDecoder, repositoriesPage, RepositoryDto.class);
+    }
+
+    @Benchmark
+    public List<BranchWithCommitsDto> streamingBranches() {
+        return decode(streamingDecoder, branchesPage, BranchWithCommitsDto.class);
+    }
+
+    private static <T> List<T> decode(final Decoder<?> decoder, final byte[] payload, final Class<T> elementType) {
+        return decoder.decode(BenchmarkBuffers.chunks(payload), ResolvableType.forClass(elementType),
+                        MediaType.APPLICATION_JSON, Map.of())
+                .cast(elementType)
+                .collectList()
+                .block();
+    }
+}
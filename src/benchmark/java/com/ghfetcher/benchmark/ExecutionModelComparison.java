@@ -0,0 +1,108 @@
+package com.ghfetcher.benchmark;
+
+import com.github.tomakehurst.wiremock.WireMockServer;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.ThreadMXBean;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.options;
+
+/**
+ * Runs the {@link LoadTestHarness} workload against the reactive ({@code rest}) and the {@code virtual-threads}
+ * client one after the other in the same JVM and WireMock stand-in, and reports throughput, latency, allocation,
+ * peak platform threads and heap in use after the run for each.
+ * <p>
+ * The reactive client resolves a user in the Reactor pipeline, the virtual-thread client with blocking code and a
+ * structured fan-out on virtual threads; both go through the same single-flight, rate limit permits and metrics in
+ * {@code GithubService}. Hot-user snapshots, per-repository branch snapshots and admission control are switched off,
+ * as are the conditional request cache, retries and hedging, which only the reactive client has, so both make exactly
+ * the same upstream calls, with up to {@code concurrency} of them in flight. Takes the same {@code --name=value}
+ * options as the harness.
+ */
+public final class ExecutionModelComparison {
+
+    private static final List<String> CLIENTS = List.of("rest", "virtual-threads");
+
+    private ExecutionModelComparison() {
+    }
+
+    public static void main(final String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (arg.startsWith("--") && arg.contains("=")) {
+                options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+            }
+        }
+        int users = intOption(options, "users", 50);
+        int repos = intOption(options, "repos", 30);
+        int branches = intOption(options, "branches", 5);
+        int latency = intOption(options, "latency", 50);
+        int concurrency = intOption(options, "concurrency", 256);
+        int requests = intOption(options, "requests", 2000);
+        int warmup = intOption(options, "warmup", 500);
+        String accept = options.getOrDefault("accept", MediaType.APPLICATION_JSON_VALUE);
+        String upstreamCalls = String.valueOf(concurrency);
+
+        WireMockServer github = new WireMockServer(options()
+                .dynamicPort()
+                .containerThreads(Math.max(50, concurrency * 2))
+                .asynchronousResponseEnabled(true)
+                .asynchronousResponseThreads(Math.max(20, concurrency))
+                .disableRequestJournal());
+        github.start();
+        try {
+            LoadTestHarness.stubGithub(github, repos, branches, latency);
+            System.out.printf("users=%d repos/user=%d branches/repo=%d upstream-latency=%dms concurrency=%d "
+                    + "accept=%s%n", users, repos, branches, latency, concurrency, accept);
+            for (String client : CLIENTS) {
+                Map<String, String> applicationOptions = new HashMap<>(options);
+                applicationOptions.put("app.service.github.client", client);
+                applicationOptions.put("app.service.github.refresh.enabled", "false");
+                applicationOptions.put("app.service.github.cache.max-repository-snapshots", "0");
+                applicationOptions.putIfAbsent("app.service.github.admission.enabled", "false");
+                applicationOptions.putIfAbsent("app.service.github.cache.max-entries", "0");
+                applicationOptions.putIfAbsent("app.service.github.resilience.max-retries", "0");
+                applicationOptions.putIfAbsent("app.service.github.resilience.hedge-quantile", "0");
+                applicationOptions.putIfAbsent("app.service.github.rate-limit.max-concurrency", upstreamCalls);
+                applicationOptions.putIfAbsent("app.service.github.http.max-connections", upstreamCalls);
+                ConfigurableApplicationContext application = LoadTestHarness.startApplication(github.port(),
+                        applicationOptions);
+                try {
+                    int port = ((WebServerApplicationContext) application).getWebServer().getPort();
+                    WebClient loadClient = LoadTestHarness.loadClient(port, concurrency);
+                    LoadTestHarness.run(loadClient, users, warmup, concurrency, accept);
+                    ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+                    threads.resetPeakThreadCount();
+                    LoadTestHarness.Result result = LoadTestHarness.run(loadClient, users, requests, concurrency,
+                            accept);
+                    System.out.printf("%n--- client=%s ---%n", client);
+                    result.print();
+                    System.out.printf("peak platform threads=%d heap after run=%.1f MB%n",
+                            threads.getPeakThreadCount(), heapUsedAfterGc() / (1024.0 * 1024));
+                } finally {
+                    application.close();
+                }
+            }
+        } finally {
+            github.stop();
+        }
+    }
+
+    private static long heapUsedAfterGc() {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        memory.gc();
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+
+    private static int intOption(final Map<String, String> options, final String name, final int defaultValue) {
+        return options.containsKey(name) ? Integer.parseInt(options.get(name)) : defaultValue;
+    }
+}
@@ -0,0 +1,117 @@
+package com.ghfetcher.benchmark;
+
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Generates GitHub-shaped JSON payloads. Repository objects carry the full set of fields returned by
+ * {@code GET /users/{user}/repos} (about 5 KB each), of which the application keeps only a few.
+ */
+public final class GithubPayloads {
+
+    private static final String REPOSITORY_TEMPLATE = """
+            {"id":%3$d,"node_id":"R_kgDOH%3$08d","name":"%2$s","full_name":"%1$s/%2$s","private":false,\
+            "owner":{"login":"%1$s","id":1000001,"node_id":"MDQ6VXNlcjEwMDAwMDE=",\
+            "avatar_url":"https://avatars.githubusercontent.com/u/1000001?v=4","gravatar_id":"",\
+            "url":"https://api.github.com/users/%1$s","html_url":"https://github.com/%1$s",\
+            "followers_url":"https://api.github.com/users/%1$s/followers",\
+            "following_url":"https://api.github.com/users/%1$s/following{/other_user}",\
+            "gists_url":"https://api.github.com/users/%1$s/gists{/gist_id}",\
+            "starred_url":"https://api.github.com/users/%1$s/starred{/owner}{/repo}",\
+            "subscriptions_url":"https://api.github.com/users/%1$s/subscriptions",\
+            "organizations_url":"https://api.github.com/users/%1$s/orgs",\
+            "repos_url":"https://api.github.com/users/%1$s/repos",\
+            "events_url":"https://api.github.com/users/%1$s/events{/privacy}",\
+            "received_events_url":"https://api.github.com/users/%1$s/received_events",\
+            "type":"User","site_admin":false},\
+            "html_url":"https://github.com/%1$s/%2$s","description":"Benchmark repository %2$s with a description",\
+            "fork":%4$s,"url":"https://api.github.com/repos/%1$s/%2$s",\
+            "forks_url":"https://api.github.com/repos/%1$s/%2$s/forks",\
+            "keys_url":"https://api.github.com/repos/%1$s/%2$s/keys{/key_id}",\
+            "collaborators_url":"https://api.github.com/repos/%1$s/%2$s/collaborators{/collaborator}",\
+            "teams_url":"https://api.github.com/repos/%1$s/%2$s/teams",\
+            "hooks_url":"https://api.github.com/repos/%1$s/%2$s/hooks",\
+            "issue_events_url":"https://api.github.com/repos/%1$s/%2$s/issues/events{/number}",\
+            "events_url":"https://api.github.com/repos/%1$s/%2$s/events",\
+            "assignees_url":"https://api.github.com/repos/%1$s/%2$s/assignees{/user}",\
+            "branches_url":"https://api.github.com/repos/%1$s/%2$s/branches{/branch}",\
+            "tags_url":"https://api.github.com/repos/%1$s/%2$s/tags",\
+            "blobs_url":"https://api.github.com/repos/%1$s/%2$s/git/blobs{/sha}",\
+            "git_tags_url":"https://api.github.com/repos/%1$s/%2$s/git/tags{/sha}",\
+            "git_refs_url":"https://api.github.com/repos/%1$s/%2$s/git/refs{/sha}",\
+            "trees_url":"https://api.github.com/repos/%1$s/%2$s/git/trees{/sha}",\
+            "statuses_url":"https://api.github.com/repos/%1$s/%2$s/statuses/{sha}",\
+            "languages_url":"https://api.github.com/repos/%1$s/%2$s/languages",\
+            "stargazers_url":"https://api.github.com/repos/%1$s/%2$s/stargazers",\
+            "contributors_url":"https://api.github.com/repos/%1$s/%2$s/contributors",\
+            "subscribers_url":"https://api.github.com/repos/%1$s/%2$s/subscribers",\
+            "subscription_url":"https://api.github.com/repos/%1$s/%2$s/subscription",\
+            "commits_url":"https://api.github.com/repos/%1$s/%2$s/commits{/sha}",\
+            "git_commits_url":"https://api.github.com/repos/%1$s/%2$s/git/commits{/sha}",\
+            "comments_url":"https://api.github.com/repos/%1$s/%2$s/comments{/number}",\
+            "issue_comment_url":"https://api.github.com/repos/%1$s/%2$s/issues/comments{/number}",\
+            "contents_url":"https://api.github.com/repos/%1$s/%2$s/contents/{+path}",\
+            "compare_url":"https://api.github.com/repos/%1$s/%2$s/compare/{base}...{head}",\
+            "merges_url":"https://api.github.com/repos/%1$s/%2$s/merges",\
+            "archive_url":"https://api.github.com/repos/%1$s/%2$s/{archive_format}{/ref}",\
+            "downloads_url":"https://api.github.com/repos/%1$s/%2$s/downloads",\
+            "issues_url":"https://api.github.com/repos/%1$s/%2$s/issues{/number}",\
+            "pulls_url":"https://api.github.com/repos/%1$s/%2$s/pulls{/number}",\
+            "milestones_url":"https://api.github.com/repos/%1$s/%2$s/milestones{/number}",\
+            "notifications_url":"https://api.github.com/repos/%1$s/%2$s/notifications{?since,all,participating}",\
+            "labels_url":"https://api.github.com/repos/%1$s/%2$s/labels{/name}",\
+            "releases_url":"https://api.github.com/repos/%1$s/%2$s/releases{/id}",\
+            "deployments_url":"https://api.github.com/repos/%1$s/%2$s/deployments",\
+            "created_at":"2023-01-15T10:20:30Z","updated_at":"2024-06-01T08:00:00Z","pushed_at":"2024-06-01T07:59:00Z",\
+            "git_url":"git://github.com/%1$s/%2$s.git","ssh_url":"git@github.com:%1$s/%2$s.git",\
+            "clone_url":"https://github.com/%1$s/%2$s.git","svn_url":"https://github.com/%1$s/%2$s",\
+            "homepage":null,"size":1234,"stargazers_count":12,"watchers_count":12,"language":"Java",\
+            "has_issues":true,"has_projects":true,"has_downloads":true,"has_wiki":true,"has_pages":false,\
+            "has_discussions":false,"forks_count":3,"mirror_url":null,"archived":false,"disabled":false,\
+            "open_issues_count":1,"license":{"key":"mit","name":"MIT License","spdx_id":"MIT",\
+            "url":"https://api.github.com/licenses/mit","node_id":"MDc6TGljZW5zZTEz"},\
+            "allow_forking":true,"is_template":false,"web_commit_signoff_required":false,\
+            "topics":["java","spring","webflux"],"visibility":"public","forks":3,"open_issues":1,"watchers":12,\
+            "default_branch":"main"}""";
+
+    private static final String BRANCH_TEMPLATE = """
+            {"name":"%3$s","commit":{"sha":"%4$s",\
+            "url":"https://api.github.com/repos/%1$s/%2$s/commits/%4$s"},"protected":false}""";
+
+    private GithubPayloads() {
+    }
+
+    public static String repositoriesPage(final String userName, final int firstIndex, final int count) {
+        return IntStream.range(firstIndex, firstIndex + count)
+                .mapToObj(index -> repository(userName, "repo-" + index, index, index % 10 == 9))
+                .collect(Collectors.joining(",", "[", "]"));
+    }
+
+    public static String branchesPage(final String userName, final String repoName, final int firstIndex, final int count) {
+        return IntStream.range(firstIndex, firstIndex + count)
+                .mapToObj(index -> BRANCH_TEMPLATE.formatted(userName, repoName, branchName(index), sha(repoName, index)))
+                .collect(Collectors.joining(",", "[", "]"));
+    }
+
+    public static String repository(final String userName, final String repoName, final int id, final boolean fork) {
+        return REPOSITORY_TEMPLATE.formatted(userName, repoName, id, fork);
+    }
+
+    public static String branchName(final int index) {
+        return switch (index) {
+            case 0 -> "main";
+            case 1 -> "develop";
+            default -> "feature/branch-" + index;
+        };
+    }
+
+    public static String sha(final String seed, final int index) {
+        StringBuilder sha = new StringBuilder(40);
+        long value = (seed.hashCode() * 31L + index) * 0x9E3779B97F4A7C15L;
+        while (sha.length() < 40) {
+            sha.append(String.format("%016x", value));
+            value = value * 0x9E3779B97F4A7C15L + 1;
+        }
+        return sha.substring(0, 40);
+    }
+}
@@ -0,0 +1,215 @@
+package com.ghfetcher.benchmark;
+
+import com.ghfetcher.GithubApplication;
+import com.github.tomakehurst.wiremock.WireMockServer;
+import com.github.tomakehurst.wiremock.client.MappingBuilder;
+import com.github.tomakehurst.wiremock.client.ResponseDefinitionBuilder;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.equalTo;
+import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlPathMatching;
+import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.options;
+
+/**
+ * Drives the full application against a local WireMock stand-in for GitHub and reports throughput, latency
+ * percentiles and allocation rate.
+ * <p>
+ * Options are passed as {@code --name=value}: {@code users}, {@code repos} (per user), {@code branches} (per
+ * repository), {@code latency} (upstream, ms), {@code concurrency}, {@code requests}, {@code warmup} and
+ * {@code accept}. Any {@code --app.<property>=value} is handed to the application as {@code <property>=value}.
+ */
+public final class LoadTestHarness {
+
+    private static final int PAGE_SIZE = 100;
+
+    private LoadTestHarness() {
+    }
+
+    public static void main(final String[] args) {
+        Map<String, String> options = parseOptions(args);
+        int users = intOption(options, "users", 50);
+        int repos = intOption(options, "repos", 30);
+        int branches = intOption(options, "branches", 5);
+        int latency = intOption(options, "latency", 50);
+        int concurrency = intOption(options, "concurrency", 64);
+        int requests = intOption(options, "requests", 2000);
+        int warmup = intOption(options, "warmup", 500);
+        String accept = options.getOrDefault("accept", MediaType.APPLICATION_JSON_VALUE);
+
+        WireMockServer github = new WireMockServer(options()
+                .dynamicPort()
+                .containerThreads(Math.max(50, concurrency * 2))
+                .asynchronousResponseEnabled(true)
+                .asynchronousResponseThreads(Math.max(20, concurrency))
+                .disableRequestJournal());
+        github.start();
+        ConfigurableApplicationContext application = null;
+        try {
+            stubGithub(github, repos, branches, latency);
+            application = startApplication(github.port(), options);
+            int port = ((WebServerApplicationContext) application).getWebServer().getPort();
+            WebClient client = loadClient(port, concurrency);
+
+            System.out.printf("users=%d repos/user=%d branches/repo=%d upstream-latency=%dms concurrency=%d accept=%s%n",
+                    users, repos, branches, latency, concurrency, accept);
+            run(client, users, warmup, concurrency, accept);
+            Result result = run(client, users, requests, concurrency, accept);
+            result.print();
+        } finally {
+            if (application != null) {
+                application.close();
+            }
+            github.stop();
+        }
+    }
+
+    static Result run(final WebClient client, final int users, final int requests, final int concurrency,
+                      final String accept) {
+        long[] latencies = new long[requests];
+        AtomicInteger errors = new AtomicInteger();
+        AtomicLong bytes = new AtomicLong();
+        long allocatedBefore = allocatedBytes();
+        long start = System.nanoTime();
+        Flux.range(0, requests)
+                .flatMap(request -> {
+                    long requestStart = System.nanoTime();
+                    return client.get()
+                            .uri("/api/github/{userName}", "user-" + request % users)
+                            .header(HttpHeaders.ACCEPT, accept)
+                            .retrieve()
+                            .bodyToFlux(DataBuffer.class)
+                            .map(buffer -> {
+                                int size = buffer.readableByteCount();
+                                DataBufferUtils.release(buffer);
+                                return size;
+                            })
+                            .reduce(0L, Long::sum)
+                            .doOnNext(bytes::addAndGet)
+                            .doOnError(error -> errors.incrementAndGet())
+                            .onErrorResume(error -> Mono.empty())
+                            .doFinally(signal -> latencies[request] = System.nanoTime() - requestStart);
+                }, concurrency)
+                .blockLast();
+        long elapsed = System.nanoTime() - start;
+        return new Result(requests, errors.get(), elapsed, latencies, allocatedBytes() - allocatedBefore, bytes.get());
+    }
+
+    static void stubGithub(final WireMockServer github, final int repos, final int branches, final int latency) {
+        stubPaged(github, "/users/([^/]+)/repos", repos, latency,
+                (first, count) -> GithubPayloads.repositoriesPage("user", first, count));
+        stubPaged(github, "/repos/([^/]+)/([^/]+)/branches", branches, latency,
+                (first, count) -> GithubPayloads.branchesPage("user", "repo", first, count));
+    }
+
+    static ConfigurableApplicationContext startApplication(final int githubPort, final Map<String, String> options) {
+        Map<String, String> properties = new HashMap<>();
+        properties.put("server.port", "0");
+        properties.put("service.github.url", "http://localhost:" + githubPort);
+        properties.put("service.github.page-size", String.valueOf(PAGE_SIZE));
+        properties.put("logging.level.root", "WARN");
+        options.forEach((name, value) -> {
+            if (name.startsWith("app.")) {
+                properties.put(name.substring("app.".length()), value);
+            }
+        });
+        String[] arguments = properties.entrySet().stream()
+                .map(property -> "--" + property.getKey() + "=" + property.getValue())
+                .toArray(String[]::new);
+        return new SpringApplicationBuilder(GithubApplication.class).run(arguments);
+    }
+
+    static WebClient loadClient(final int port, final int concurrency) {
+        ConnectionProvider connections = ConnectionProvider.builder("load-test")
+                .maxConnections(concurrency)
+                .pendingAcquireMaxCount(-1)
+                .build();
+        return WebClient.builder()
+                .baseUrl("http://localhost:" + port)
+                .clientConnector(new ReactorClientHttpConnector(HttpClient.create(connections)))
+                .build();
+    }
+
+    private static void stubPaged(final WireMockServer github, final String pathPattern, final int items,
+                                  final int latency, final PageGenerator pageGenerator) {
+        int pages = Math.max(1, (items + PAGE_SIZE - 1) / PAGE_SIZE);
+        for (int page = 1; page <= pages; page++) {
+            int first = (page - 1) * PAGE_SIZE;
+            MappingBuilder mapping = get(urlPathMatching(pathPattern));
+            ResponseDefinitionBuilder response = aResponse()
+                    .withHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                    .withFixedDelay(latency)
+                    .withBody(pageGenerator.page(first, Math.min(PAGE_SIZE, items - first)));
+            if (pages > 1) {
+                mapping = mapping.withQueryParam("page", equalTo(String.valueOf(page)));
+                response = response.withHeader(HttpHeaders.LINK,
+                        "<http://localhost/page?page=%d>; rel=\"last\"".formatted(pages));
+            }
+            github.stubFor(mapping.willReturn(response));
+        }
+    }
+
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean()).getTotalThreadAllocatedBytes();
+    }
+
+    private static Map<String, String> parseOptions(final String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (arg.startsWith("--") && arg.contains("=")) {
+                options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+            }
+        }
+        return options;
+    }
+
+    private static int intOption(final Map<String, String> options, final String name, final int defaultValue) {
+        return options.containsKey(name) ? Integer.parseInt(options.get(name)) : defaultValue;
+    }
+
+    @FunctionalInterface
+    interface PageGenerator {
+        String page(int firstIndex, int count);
+    }
+
+    record Result(int requests, int errors, long elapsedNanos, long[] latencies, long allocatedBytes, long responseBytes) {
+
+        void print() {
+            long[] sorted = latencies.clone();
+            Arrays.sort(sorted);
+            double seconds = elapsedNanos / 1e9;
+            System.out.printf("requests=%d errors=%d elapsed=%.2fs%n", requests, errors, seconds);
+            System.out.printf("throughput=%.1f req/s%n", requests / seconds);
+            System.out.printf("latency p50=%.1fms p99=%.1fms max=%.1fms%n",
+                    percentile(sorted, 0.50), percentile(sorted, 0.99), sorted[sorted.length - 1] / 1e6);
+            System.out.printf("allocation=%.1f MB/s (%.1f KB/request, whole JVM incl. WireMock and load client)%n",
+                    allocatedBytes / seconds / (1024 * 1024), allocatedBytes / 1024.0 / requests);
+            System.out.printf("response=%.1f KB/request%n", responseBytes / 1024.0 / requests);
+        }
+
+        private static double percentile(final long[] sorted, final double percentile) {
+            int index = (int) Math.ceil(percentile * sorted.length) - 1;
+            return sorted[Math.max(0, index)] / 1e6;
+        }
+    }
+}
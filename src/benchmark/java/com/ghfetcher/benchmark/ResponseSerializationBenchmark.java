@@ -0,0 +1,75 @@
+package com.ghfetcher.benchmark;
+
+import com.ghfetcher.dto.BranchWithShaDto;
+import com.ghfetcher.dto.RepositoryResponseDto;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.json.Jackson2JsonEncoder;
+import reactor.core.publisher.Flux;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/**
+ * Encodes the response of one user as a JSON array and as NDJSON.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ResponseSerializationBenchmark {
+
+    @Param({"10", "200"})
+    private int repositories;
+
+    @Param({"5"})
+    private int branchesPerRepository;
+
+    private final Jackson2JsonEncoder encoder = new Jackson2JsonEncoder();
+    private List<RepositoryResponseDto> response;
+
+    @Setup
+    public void setUp() {
+        response = IntStream.range(0, repositories)
+                .mapToObj(repo -> RepositoryResponseDto.builder()
+                        .repositoryName("repo-" + repo)
+                        .ownerLogin("benchmark-user")
+                        .branches(IntStream.range(0, branchesPerRepository)
+                                .mapToObj(branch -> new BranchWithShaDto(GithubPayloads.branchName(branch),
+                                        GithubPayloads.sha("repo-" + repo, branch)))
+                                .toList())
+                        .build())
+                .toList();
+    }
+
+    @Benchmark
+    public long jsonArray() {
+        return encode(MediaType.APPLICATION_JSON);
+    }
+
+    @Benchmark
+    public long ndjson() {
+        return encode(MediaType.APPLICATION_NDJSON);
+    }
+
+    private long encode(final MediaType mediaType) {
+        return BenchmarkBuffers.consume(encoder.encode(Flux.fromIterable(response), DefaultDataBufferFactory.sharedInstance,
+                ResolvableType.forClass(RepositoryResponseDto.class), mediaType, Map.of()));
+    }
+}
@@ -0,0 +1,93 @@
+package com.ghfetcher.service;
+
+import com.ghfetcher.admission.AdmissionControl;
+import com.ghfetcher.benchmark.GithubPayloads;
+import com.ghfetcher.config.GithubProperties;
+import com.ghfetcher.dto.BranchWithCommitsDto;
+import com.ghfetcher.dto.CommitDto;
+import com.ghfetcher.dto.RepositoryDto;
+import com.ghfetcher.dto.RepositoryResponseDto;
+import com.ghfetcher.metrics.FetchMetrics;
+import com.ghfetcher.persistence.SnapshotStore;
+import com.ghfetcher.ratelimit.RateLimitScheduler;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.core.env.StandardEnvironment;
+import reactor.core.publisher.Flux;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/**
+ * Maps one repository's branches to {@link com.ghfetcher.dto.BranchWithShaDto} and assembles the
+ * {@link RepositoryResponseDto} through {@link GithubService#createRepositoryResponseDto}, without any I/O.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BranchMappingBenchmark {
+
+    @Param({"10", "100", "1000"})
+    private int branches;
+
+    private GithubService githubService;
+    private final RepositoryDto repository = new RepositoryDto("repo-0", false);
+
+    @Setup
+    public void setUp() {
+        List<BranchWithCommitsDto> upstreamBranches = IntStream.range(0, branches)
+                .mapToObj(index -> new BranchWithCommitsDto(GithubPayloads.branchName(index),
+                        new CommitDto(GithubPayloads.sha("repo-0", index))))
+                .toList();
+        GithubClient inMemoryClient = new GithubClient() {
+            @Override
+            public Flux<BranchWithCommitsDto> makeRequestForBranches(final String userName, final String repoName) {
+                return Flux.fromIterable(upstreamBranches);
+            }
+
+            @Override
+            public Flux<BranchWithCommitsDto> makeRequestForBranchesPageByPage(final String userName,
+                                                                              final String repoName) {
+                return makeRequestForBranches(userName, repoName);
+            }
+
+            @Override
+            public Flux<RepositoryDto> makeRequestForUserRepos(final String userName) {
+                return Flux.just(repository);
+            }
+
+            @Override
+            public Flux<RepositoryDto> makeRequestForUserReposPageByPage(final String userName,
+                                                                         final boolean withBranches) {
+                return makeRequestForUserRepos(userName);
+            }
+        };
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        GithubProperties githubProperties = Binder.get(new StandardEnvironment())
+                .bindOrCreate("service.github", GithubProperties.class);
+        RateLimitScheduler rateLimitScheduler = new RateLimitScheduler(githubProperties.rateLimit(), meterRegistry);
+        githubService = new GithubService(inMemoryClient, rateLimitScheduler, new FetchMetrics(meterRegistry),
+                new AdmissionControl(githubProperties.admission(), meterRegistry), githubProperties,
+                SnapshotStore.DISABLED);
+    }
+
+    @Benchmark
+    public RepositoryResponseDto createRepositoryResponseDto() {
+        return githubService.createRepositoryResponseDto("benchmark-user", repository).block();
+    }
+}
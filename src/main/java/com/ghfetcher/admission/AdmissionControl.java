@@ -0,0 +1,230 @@
+package com.ghfetcher.admission;
+
+import com.ghfetcher.config.GithubProperties;
+import com.ghfetcher.error.ServiceOverloadedException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Bounds the number of incoming requests fetched at the same time. Requests over the limit wait in a short queue for
+ * at most {@code maxQueueWait}; when the queue is full or the wait runs out they are rejected with
+ * {@link ServiceOverloadedException} instead of piling up fan-outs and buffered listings.
+ * <p>
+ * The limit adapts to upstream latency (see {@link #latencySampler()}): it shrinks while recent GitHub calls are
+ * more than {@code latencyTolerance} times slower than the baseline and grows back while they are not. The baseline
+ * follows lower latencies immediately and higher ones only slowly, so a lasting slowdown becomes the new normal
+ * instead of pinning the limit at its minimum. The limit only grows while at least half of it is in use.
+ */
+@Log4j2
+public class AdmissionControl {
+
+    private static final double RECENT_WEIGHT = 0.1;
+    private static final double BASELINE_WEIGHT = 0.001;
+    private static final double LIMIT_SMOOTHING = 0.2;
+    private static final double MIN_GRADIENT = 0.5;
+
+    private final GithubProperties.Admission settings;
+    private final Counter queueFullRejections;
+    private final Counter queueTimeoutRejections;
+
+    private final Deque<Waiter> waiters = new ArrayDeque<>();
+    private int inFlight;
+    private double limit;
+    private double recentNanos;
+    private double baselineNanos;
+
+    public AdmissionControl(final GithubProperties.Admission settings, final MeterRegistry meterRegistry) {
+        this.settings = settings;
+        this.limit = Math.max(settings.minLimit(), Math.min(settings.initialLimit(), settings.maxLimit()));
+        this.queueFullRejections = rejections(meterRegistry, "queue_full");
+        this.queueTimeoutRejections = rejections(meterRegistry, "queue_timeout");
+        Gauge.builder("github.admission.limit", this, AdmissionControl::limit)
+                .description("Incoming requests currently allowed to be fetched at the same time")
+                .register(meterRegistry);
+        Gauge.builder("github.admission.in.flight", this, AdmissionControl::inFlight)
+                .description("Incoming requests being fetched")
+                .register(meterRegistry);
+        Gauge.builder("github.admission.queue.depth", this, AdmissionControl::queueDepth)
+                .description("Incoming requests waiting to be admitted")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Runs {@code fetch} once the request is admitted and holds its slot until the returned flux terminates or is
+     * cancelled.
+     */
+    public <T> Flux<T> admit(final Supplier<Flux<T>> fetch) {
+        if (!settings.enabled()) {
+            return Flux.defer(fetch);
+        }
+        return Flux.usingWhen(acquire(),
+                permit -> fetch.get(),
+                permit -> Mono.fromRunnable(permit::release));
+    }
+
+    /**
+     * WebClient filter feeding the latency of every upstream call, until its response headers arrive, into the
+     * limit. Registered inside the rate limit scheduler so waiting for a permit does not count as latency.
+     */
+    public ExchangeFilterFunction latencySampler() {
+        return (request, next) -> {
+            long start = System.nanoTime();
+            return next.exchange(request)
+                    .doOnNext(response -> recordUpstreamLatency(System.nanoTime() - start))
+                    .doOnError(error -> recordUpstreamLatency(System.nanoTime() - start));
+        };
+    }
+
+    public synchronized int limit() {
+        return (int) limit;
+    }
+
+    public synchronized int inFlight() {
+        return inFlight;
+    }
+
+    public synchronized int queueDepth() {
+        return waiters.size();
+    }
+
+    Mono<Permit> acquire() {
+        Mono<Permit> permit = Mono.create(sink -> {
+            Waiter waiter = new Waiter(sink);
+            sink.onCancel(waiter::cancel);
+            boolean rejected;
+            synchronized (this) {
+                rejected = inFlight >= limit() && waiters.size() >= settings.maxQueueSize();
+                if (!rejected) {
+                    waiters.add(waiter);
+                }
+            }
+            if (rejected) {
+                queueFullRejections.increment();
+                sink.error(overloaded("Too many requests in progress, try again later"));
+                return;
+            }
+            drain();
+        });
+        return permit.timeout(settings.maxQueueWait(), Mono.defer(() -> {
+            queueTimeoutRejections.increment();
+            return Mono.error(overloaded("Request was not admitted in time, try again later"));
+        }));
+    }
+
+    /**
+     * Feeds the latency of an upstream call made outside the WebClient filter chain into the limit.
+     */
+    public void recordUpstreamLatency(final long nanos) {
+        synchronized (this) {
+            if (recentNanos == 0) {
+                recentNanos = nanos;
+                baselineNanos = nanos;
+                return;
+            }
+            recentNanos += (nanos - recentNanos) * RECENT_WEIGHT;
+            baselineNanos = Math.min(recentNanos, baselineNanos + (recentNanos - baselineNanos) * BASELINE_WEIGHT);
+            double gradient = Math.max(MIN_GRADIENT,
+                    Math.min(1.0, settings.latencyTolerance() * baselineNanos / recentNanos));
+            double headroom = inFlight * 2 >= limit ? Math.sqrt(limit) : 0;
+            double target = limit * gradient + headroom;
+            double adjusted = limit * (1 - LIMIT_SMOOTHING) + target * LIMIT_SMOOTHING;
+            int before = limit();
+            limit = Math.max(settings.minLimit(), Math.min(settings.maxLimit(), adjusted));
+            if (limit() < before && gradient < 1.0) {
+                log.debug("Upstream latency {} ms over baseline {} ms, admission limit lowered to {}",
+                        (long) (recentNanos / 1_000_000), (long) (baselineNanos / 1_000_000), limit());
+            }
+        }
+        drain();
+    }
+
+    private void drain() {
+        List<Waiter> granted = new ArrayList<>();
+        synchronized (this) {
+            while (inFlight < limit() && !waiters.isEmpty()) {
+                granted.add(waiters.poll());
+                inFlight++;
+            }
+        }
+        granted.forEach(Waiter::grant);
+    }
+
+    private void releasePermit() {
+        synchronized (this) {
+            inFlight--;
+        }
+        drain();
+    }
+
+    private ServiceOverloadedException overloaded(final String message) {
+        return new ServiceOverloadedException(message, settings.retryAfter());
+    }
+
+    private static Counter rejections(final MeterRegistry meterRegistry, final String reason) {
+        return Counter.builder("github.admission.rejected")
+                .description("Incoming requests shed because too many were already in progress")
+                .tag("reason", reason)
+                .register(meterRegistry);
+    }
+
+    public final class Permit {
+
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Permit() {
+        }
+
+        public void release() {
+            if (released.compareAndSet(false, true)) {
+                releasePermit();
+            }
+        }
+    }
+
+    private final class Waiter {
+
+        private static final int WAITING = 0;
+        private static final int GRANTED = 1;
+        private static final int CANCELLED = 2;
+
+        private final MonoSink<Permit> sink;
+        private final AtomicInteger state = new AtomicInteger(WAITING);
+        private final Permit permit = new Permit();
+
+        private Waiter(final MonoSink<Permit> sink) {
+            this.sink = sink;
+        }
+
+        private void grant() {
+            if (state.compareAndSet(WAITING, GRANTED)) {
+                sink.success(permit);
+            } else {
+                permit.release();
+            }
+        }
+
+        private void cancel() {
+            if (state.compareAndSet(WAITING, CANCELLED)) {
+                synchronized (AdmissionControl.this) {
+                    waiters.remove(this);
+                }
+            } else {
+                permit.release();
+            }
+        }
+    }
+}
@@ -0,0 +1,203 @@
+package com.ghfetcher.cache;
+
+import com.ghfetcher.error.UpstreamUnavailableException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+import org.springframework.web.reactive.function.client.ExchangeFunction;
+import org.springframework.web.reactive.function.client.ExchangeStrategies;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Revalidates GitHub GET requests with {@code If-None-Match} / {@code If-Modified-Since} and serves the
+ * stored body when upstream answers {@code 304 Not Modified}. Such responses do not count against the rate limit.
+ * While the circuit to GitHub is open ({@link UpstreamUnavailableException}) the stored body is served as it is.
+ * <p>
+ * Stored bodies are bounded by {@code maxBytes} in total; a body over {@code maxEntryBytes} is passed through without
+ * being kept, and copying it stops as soon as it outgrows that size. Entries are keyed by URL alone, because the token
+ * is only chosen further down the filter chain: every pooled token has to see the same data, which holds for the
+ * public listings fetched here (a token seeing a different representation merely gets a {@code 200} instead of a
+ * {@code 304}, except while the circuit is open).
+ */
+@Log4j2
+public class ConditionalRequestCache implements ExchangeFilterFunction {
+
+    private static final Set<String> BODY_HEADERS = Set.of(
+            HttpHeaders.CONTENT_LENGTH.toLowerCase(),
+            HttpHeaders.CONTENT_TYPE.toLowerCase(),
+            HttpHeaders.TRANSFER_ENCODING.toLowerCase());
+
+    private final LruCache<String, CachedResponse> entries;
+    private final long maxEntryBytes;
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter changed;
+    private final Counter stale;
+
+    public ConditionalRequestCache(final int maxEntries, final long maxBytes, final long maxEntryBytes,
+                                   final MeterRegistry meterRegistry) {
+        this.entries = new LruCache<>(maxEntries, maxBytes, cached -> cached.body().length);
+        this.maxEntryBytes = Math.min(maxEntryBytes, maxBytes);
+        this.hits = cacheCounter(meterRegistry, "hit");
+        this.misses = cacheCounter(meterRegistry, "miss");
+        this.changed = cacheCounter(meterRegistry, "changed");
+        this.stale = cacheCounter(meterRegistry, "stale");
+        Gauge.builder("github.cache.size", entries, LruCache::size)
+                .description("Number of upstream responses held for revalidation")
+                .register(meterRegistry);
+        Gauge.builder("github.cache.bytes", entries, LruCache::weight)
+                .description("Bytes of upstream response bodies held for revalidation")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        FunctionCounter.builder("github.cache.evictions", entries, LruCache::evictionCount)
+                .description("Number of least recently used responses evicted from the cache")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public Mono<ClientResponse> filter(final ClientRequest request, final ExchangeFunction next) {
+        if (request.method() != HttpMethod.GET) {
+            return next.exchange(request);
+        }
+        String key = request.url().toString();
+        CachedResponse cached = entries.get(key);
+        if (cached == null) {
+            misses.increment();
+            return next.exchange(request)
+                    .map(response -> store(key, response));
+        }
+        ClientRequest conditionalRequest = ClientRequest.from(request)
+                .headers(headers -> {
+                    if (cached.etag() != null) {
+                        headers.setIfNoneMatch(cached.etag());
+                    }
+                    if (cached.lastModified() != null) {
+                        headers.set(HttpHeaders.IF_MODIFIED_SINCE, cached.lastModified());
+                    }
+                })
+                .build();
+        return next.exchange(conditionalRequest)
+                .map(response -> {
+                    if (response.statusCode() == HttpStatus.NOT_MODIFIED) {
+                        hits.increment();
+                        return serveFromCache(response, cached);
+                    }
+                    changed.increment();
+                    return store(key, response);
+                })
+                .onErrorResume(UpstreamUnavailableException.class, ex -> Mono.just(serveStale(request, cached)));
+    }
+
+    private ClientResponse store(final String key, final ClientResponse response) {
+        HttpHeaders headers = response.headers().asHttpHeaders();
+        String etag = headers.getETag();
+        String lastModified = headers.getFirst(HttpHeaders.LAST_MODIFIED);
+        if (response.statusCode() != HttpStatus.OK || (etag == null && lastModified == null)) {
+            return response;
+        }
+        if (headers.getContentLength() > maxEntryBytes) {
+            entries.remove(key);
+            return response;
+        }
+        HttpHeaders storedHeaders = new HttpHeaders();
+        storedHeaders.addAll(headers);
+        BodyCopy copy = new BodyCopy(maxEntryBytes);
+        return response.mutate()
+                .body(body -> body
+                        .doOnNext(copy::append)
+                        .doOnComplete(() -> copy.bytes().ifPresentOrElse(bytes -> entries.put(key,
+                                        new CachedResponse(etag, lastModified, storedHeaders, bytes,
+                                                response.strategies())),
+                                () -> entries.remove(key))))
+                .build();
+    }
+
+    private ClientResponse serveFromCache(final ClientResponse notModified, final CachedResponse cached) {
+        log.debug("Serving {} from cache after 304 Not Modified", notModified.request().getURI());
+        return notModified.mutate()
+                .statusCode(HttpStatus.OK)
+                .headers(headers -> {
+                    HttpHeaders fresh = new HttpHeaders();
+                    fresh.addAll(headers);
+                    headers.clear();
+                    headers.addAll(cached.headers());
+                    fresh.forEach((name, values) -> {
+                        if (!BODY_HEADERS.contains(name.toLowerCase())) {
+                            headers.put(name, values);
+                        }
+                    });
+                })
+                .body(body -> body
+                        .doOnNext(DataBufferUtils::release)
+                        .thenMany(Flux.defer(() -> Flux.just(DefaultDataBufferFactory.sharedInstance.wrap(cached.body())))))
+                .build();
+    }
+
+    private ClientResponse serveStale(final ClientRequest request, final CachedResponse cached) {
+        log.debug("GitHub is unavailable, serving {} from cache without revalidation", request.url());
+        stale.increment();
+        return ClientResponse.create(HttpStatus.OK, cached.strategies())
+                .headers(headers -> headers.addAll(cached.headers()))
+                .body(Flux.defer(() -> Flux.just(DefaultDataBufferFactory.sharedInstance.wrap(cached.body()))))
+                .build();
+    }
+
+    private static Counter cacheCounter(final MeterRegistry meterRegistry, final String result) {
+        return Counter.builder("github.cache.requests")
+                .description("Upstream GET requests by conditional cache outcome")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Copy of a streamed body, given up once it grows beyond {@code maxBytes}.
+     */
+    private static final class BodyCopy {
+
+        private final long maxBytes;
+        private ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        private BodyCopy(final long maxBytes) {
+            this.maxBytes = maxBytes;
+        }
+
+        private void append(final DataBuffer buffer) {
+            if (bytes == null) {
+                return;
+            }
+            if (bytes.size() + (long) buffer.readableByteCount() > maxBytes) {
+                bytes = null;
+                return;
+            }
+            int readPosition = buffer.readPosition();
+            byte[] chunk = new byte[buffer.readableByteCount()];
+            buffer.read(chunk);
+            buffer.readPosition(readPosition);
+            bytes.writeBytes(chunk);
+        }
+
+        private Optional<byte[]> bytes() {
+            return Optional.ofNullable(bytes).map(ByteArrayOutputStream::toByteArray);
+        }
+    }
+
+    private record CachedResponse(String etag, String lastModified, HttpHeaders headers, byte[] body,
+                                  ExchangeStrategies strategies) {
+    }
+}
@@ -0,0 +1,72 @@
+package com.ghfetcher.cache;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.ToLongFunction;
+
+/**
+ * Least recently used entries are evicted once there are more than {@code maxEntries} of them or, with a weigher,
+ * once their total weight exceeds {@code maxWeight}. A single value heavier than {@code maxWeight} is not kept.
+ */
+public class LruCache<K, V> {
+
+    private final int maxEntries;
+    private final long maxWeight;
+    private final ToLongFunction<? super V> weigher;
+    private final LinkedHashMap<K, V> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long weight;
+    private long evictionCount;
+
+    public LruCache(final int maxEntries) {
+        this(maxEntries, Long.MAX_VALUE, value -> 0);
+    }
+
+    public LruCache(final int maxEntries, final long maxWeight, final ToLongFunction<? super V> weigher) {
+        this.maxEntries = maxEntries;
+        this.maxWeight = maxWeight;
+        this.weigher = weigher;
+    }
+
+    public synchronized V get(final K key) {
+        return entries.get(key);
+    }
+
+    public synchronized void put(final K key, final V value) {
+        long valueWeight = weigher.applyAsLong(value);
+        if (valueWeight > maxWeight) {
+            remove(key);
+            return;
+        }
+        V previous = entries.put(key, value);
+        if (previous != null) {
+            weight -= weigher.applyAsLong(previous);
+        }
+        weight += valueWeight;
+        Iterator<V> eldest = entries.values().iterator();
+        while (entries.size() > maxEntries || weight > maxWeight) {
+            weight -= weigher.applyAsLong(eldest.next());
+            eldest.remove();
+            evictionCount++;
+        }
+    }
+
+    public synchronized void remove(final K key) {
+        V removed = entries.remove(key);
+        if (removed != null) {
+            weight -= weigher.applyAsLong(removed);
+        }
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long weight() {
+        return weight;
+    }
+
+    public synchronized long evictionCount() {
+        return evictionCount;
+    }
+}
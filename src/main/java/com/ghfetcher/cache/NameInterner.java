@@ -0,0 +1,39 @@
+package com.ghfetcher.cache;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Deduplicates branch names, which repeat across cached entries ({@code main}, {@code master}, {@code develop}).
+ * Names that are mostly unique, such as repository names and owner logins, are not passed in, so the map holds the
+ * shared names. Once {@code maxEntries} distinct names are held, new names are returned as they are; the first names
+ * seen are usually the common ones.
+ */
+public class NameInterner {
+
+    private final int maxEntries;
+    private final ConcurrentMap<String, String> names = new ConcurrentHashMap<>();
+
+    public NameInterner(final int maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+
+    public String intern(final String name) {
+        if (name == null) {
+            return null;
+        }
+        String interned = names.get(name);
+        if (interned != null) {
+            return interned;
+        }
+        if (names.size() >= maxEntries) {
+            return name;
+        }
+        interned = names.putIfAbsent(name, name);
+        return interned != null ? interned : name;
+    }
+
+    public int size() {
+        return names.size();
+    }
+}
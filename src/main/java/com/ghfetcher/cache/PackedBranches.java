@@ -0,0 +1,102 @@
+package com.ghfetcher.cache;
+
+import com.ghfetcher.dto.BranchWithShaDto;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HexFormat;
+import java.util.List;
+
+/**
+ * Branches packed into two flat arrays: interned names and the SHA-1 of every branch as 20 raw bytes in a single
+ * {@code byte[]}. SHAs that are not 40 lowercase hex characters (missing, or SHA-256 repositories) are kept as
+ * strings on the side. {@link BranchWithShaDto}s are only created on {@link #get(int)}.
+ */
+public final class PackedBranches {
+
+    public static final PackedBranches EMPTY = new PackedBranches(new String[0], new byte[0], null, null);
+
+    static final int SHA_BYTES = 20;
+    private static final int SHA_HEX_LENGTH = 2 * SHA_BYTES;
+    private static final HexFormat HEX = HexFormat.of();
+
+    private final String[] names;
+    private final byte[] shas;
+    private final BitSet irregular;
+    private final String[] irregularShas;
+
+    private PackedBranches(final String[] names, final byte[] shas, final BitSet irregular,
+                           final String[] irregularShas) {
+        this.names = names;
+        this.shas = shas;
+        this.irregular = irregular;
+        this.irregularShas = irregularShas;
+    }
+
+    public static PackedBranches pack(final List<BranchWithShaDto> branches, final NameInterner interner) {
+        if (branches.isEmpty()) {
+            return EMPTY;
+        }
+        String[] names = new String[branches.size()];
+        byte[] shas = new byte[branches.size() * SHA_BYTES];
+        BitSet irregular = null;
+        String[] irregularShas = null;
+        for (int i = 0; i < names.length; i++) {
+            BranchWithShaDto branch = branches.get(i);
+            names[i] = interner.intern(branch.name());
+            if (isPackable(branch.sha())) {
+                for (int j = 0; j < SHA_BYTES; j++) {
+                    shas[i * SHA_BYTES + j] = (byte) HexFormat.fromHexDigits(branch.sha(), 2 * j, 2 * j + 2);
+                }
+            } else {
+                if (irregular == null) {
+                    irregular = new BitSet(names.length);
+                    irregularShas = new String[names.length];
+                }
+                irregular.set(i);
+                irregularShas[i] = branch.sha();
+            }
+        }
+        return new PackedBranches(names, shas, irregular, irregularShas);
+    }
+
+    public int size() {
+        return names.length;
+    }
+
+    public BranchWithShaDto get(final int index) {
+        return new BranchWithShaDto(names[index], sha(index));
+    }
+
+    public List<BranchWithShaDto> toList(final int fromIndex, final int toIndex) {
+        List<BranchWithShaDto> branches = new ArrayList<>(toIndex - fromIndex);
+        for (int i = fromIndex; i < toIndex; i++) {
+            branches.add(get(i));
+        }
+        return branches;
+    }
+
+    public List<BranchWithShaDto> toList() {
+        return toList(0, size());
+    }
+
+    private String sha(final int index) {
+        if (irregular != null && irregular.get(index)) {
+            return irregularShas[index];
+        }
+        return HEX.formatHex(shas, index * SHA_BYTES, (index + 1) * SHA_BYTES);
+    }
+
+    private static boolean isPackable(final String sha) {
+        if (sha == null || sha.length() != SHA_HEX_LENGTH) {
+            return false;
+        }
+        for (int i = 0; i < SHA_HEX_LENGTH; i++) {
+            char c = sha.charAt(i);
+            if ((c < '0' || c > '9') && (c < 'a' || c > 'f')) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
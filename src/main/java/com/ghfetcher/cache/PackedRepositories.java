@@ -0,0 +1,65 @@
+package com.ghfetcher.cache;
+
+import com.ghfetcher.dto.BranchWithShaDto;
+import com.ghfetcher.dto.RepositoryResponseDto;
+import reactor.core.publisher.Flux;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * One user's repositories as kept in memory: repository names, and the branches of all repositories packed into a
+ * single {@link PackedBranches} delimited by offsets. Only branch names are interned; repository names rarely repeat
+ * across users and would just fill the interner. {@link RepositoryResponseDto}s are only materialized
+ * when the result is served, one at a time, and become garbage right after being serialized.
+ */
+public final class PackedRepositories {
+
+    private final String ownerLogin;
+    private final String[] names;
+    private final int[] branchOffsets;
+    private final PackedBranches branches;
+
+    private PackedRepositories(final String ownerLogin, final String[] names, final int[] branchOffsets,
+                               final PackedBranches branches) {
+        this.ownerLogin = ownerLogin;
+        this.names = names;
+        this.branchOffsets = branchOffsets;
+        this.branches = branches;
+    }
+
+    public static PackedRepositories pack(final String ownerLogin, final List<RepositoryResponseDto> repositories,
+                                          final NameInterner interner) {
+        String[] names = new String[repositories.size()];
+        int[] branchOffsets = new int[repositories.size() + 1];
+        List<BranchWithShaDto> allBranches = new ArrayList<>();
+        for (int i = 0; i < names.length; i++) {
+            RepositoryResponseDto repository = repositories.get(i);
+            names[i] = repository.repositoryName();
+            allBranches.addAll(repository.branches());
+            branchOffsets[i + 1] = allBranches.size();
+        }
+        return new PackedRepositories(ownerLogin, names, branchOffsets,
+                PackedBranches.pack(allBranches, interner));
+    }
+
+    public int size() {
+        return names.length;
+    }
+
+    public int branchCount() {
+        return branches.size();
+    }
+
+    public RepositoryResponseDto get(final int index) {
+        return RepositoryResponseDto.builder()
+                .ownerLogin(ownerLogin)
+                .repositoryName(names[index])
+                .branches(branches.toList(branchOffsets[index], branchOffsets[index + 1]))
+                .build();
+    }
+
+    public Flux<RepositoryResponseDto> toFlux() {
+        return Flux.range(0, size()).map(this::get);
+    }
+}
@@ -0,0 +1,266 @@
+package com.ghfetcher.codec;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.async.ByteBufferFeeder;
+import com.ghfetcher.dto.BranchWithCommitsDto;
+import com.ghfetcher.dto.CommitDto;
+import com.ghfetcher.dto.RepositoryDto;
+import org.reactivestreams.Publisher;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.codec.DecodingException;
+import org.springframework.core.codec.Decoder;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.MediaType;
+import org.springframework.util.MimeType;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Decodes the REST listings of repositories and branches with Jackson's non-blocking parser, fed straight from the
+ * {@link DataBuffer}s as they arrive. Only the fields the service uses are materialized, everything else is
+ * tokenized and dropped without building trees or strings, and every element is emitted as soon as its closing
+ * brace has been read. Payloads must be UTF-8, as GitHub's are.
+ * <p>
+ * Other element types (including the GraphQL responses) are left to the regular Jackson decoder.
+ */
+public class GithubJsonDecoder implements Decoder<Object> {
+
+    private static final List<MimeType> MIME_TYPES = List.of(
+            MediaType.APPLICATION_JSON,
+            new MediaType("application", "*+json"));
+
+    private static final Map<Class<?>, Supplier<ElementFields>> PROJECTIONS = Map.of(
+            RepositoryDto.class, RepositoryFields::new,
+            BranchWithCommitsDto.class, BranchFields::new);
+
+    private final JsonFactory jsonFactory;
+
+    public GithubJsonDecoder() {
+        this(new JsonFactory());
+    }
+
+    public GithubJsonDecoder(final JsonFactory jsonFactory) {
+        this.jsonFactory = jsonFactory;
+    }
+
+    @Override
+    public boolean canDecode(final ResolvableType elementType, final MimeType mimeType) {
+        return PROJECTIONS.containsKey(elementType.toClass())
+                && (mimeType == null || MIME_TYPES.stream().anyMatch(supported -> supported.isCompatibleWith(mimeType)));
+    }
+
+    @Override
+    public Flux<Object> decode(final Publisher<DataBuffer> input, final ResolvableType elementType,
+                               final MimeType mimeType, final Map<String, Object> hints) {
+        Supplier<ElementFields> projection = PROJECTIONS.get(elementType.toClass());
+        return Flux.defer(() -> {
+            Tokenizer tokenizer = new Tokenizer(newParser(), projection);
+            return Flux.from(input)
+                    .concatMapIterable(tokenizer::feed)
+                    .concatWith(Flux.defer(() -> Flux.fromIterable(tokenizer.endOfInput())))
+                    .doFinally(signal -> tokenizer.close());
+        }).doOnDiscard(DataBuffer.class, DataBufferUtils::release);
+    }
+
+    @Override
+    public Mono<Object> decodeToMono(final Publisher<DataBuffer> input, final ResolvableType elementType,
+                                     final MimeType mimeType, final Map<String, Object> hints) {
+        return decode(input, elementType, mimeType, hints).singleOrEmpty();
+    }
+
+    @Override
+    public List<MimeType> getDecodableMimeTypes() {
+        return MIME_TYPES;
+    }
+
+    private JsonParser newParser() {
+        try {
+            return jsonFactory.createNonBlockingByteBufferParser();
+        } catch (IOException ex) {
+            throw new DecodingException("Could not create JSON parser", ex);
+        }
+    }
+
+    /**
+     * Tracks the nesting depth of the token stream to find element objects (the entries of a top-level array, or
+     * a top-level object itself) and hands their scalar fields, and the scalar fields of their directly nested
+     * objects, to the element's projection.
+     */
+    private static final class Tokenizer {
+
+        private final JsonParser parser;
+        private final ByteBufferFeeder feeder;
+        private final Supplier<ElementFields> projection;
+
+        private int depth;
+        private int elementDepth;
+        private ElementFields element;
+        private String field;
+        private String nestedParent;
+        private String nestedField;
+
+        private Tokenizer(final JsonParser parser, final Supplier<ElementFields> projection) {
+            this.parser = parser;
+            this.feeder = (ByteBufferFeeder) parser.getNonBlockingInputFeeder();
+            this.projection = projection;
+        }
+
+        private List<Object> feed(final DataBuffer buffer) {
+            try (DataBuffer.ByteBufferIterator byteBuffers = buffer.readableByteBuffers()) {
+                List<Object> decoded = null;
+                while (byteBuffers.hasNext()) {
+                    ByteBuffer byteBuffer = byteBuffers.next();
+                    feeder.feedInput(byteBuffer);
+                    decoded = readAvailable(decoded);
+                }
+                return decoded == null ? List.of() : decoded;
+            } catch (IOException ex) {
+                throw new DecodingException("JSON decoding error: " + ex.getMessage(), ex);
+            } finally {
+                DataBufferUtils.release(buffer);
+            }
+        }
+
+        private List<Object> endOfInput() {
+            feeder.endOfInput();
+            try {
+                List<Object> decoded = readAvailable(null);
+                if (depth != 0) {
+                    throw new DecodingException("Incomplete JSON input");
+                }
+                return decoded == null ? List.of() : decoded;
+            } catch (IOException ex) {
+                throw new DecodingException("JSON decoding error: " + ex.getMessage(), ex);
+            }
+        }
+
+        private void close() {
+            try {
+                parser.close();
+            } catch (IOException ignored) {
+                // nothing is held besides the parser's own buffers
+            }
+        }
+
+        private List<Object> readAvailable(List<Object> decoded) throws IOException {
+            JsonToken token;
+            while ((token = parser.nextToken()) != null && token != JsonToken.NOT_AVAILABLE) {
+                switch (token) {
+                    case START_OBJECT, START_ARRAY -> {
+                        if (depth == 0) {
+                            elementDepth = token == JsonToken.START_ARRAY ? 2 : 1;
+                        }
+                        depth++;
+                        if (depth == elementDepth && token == JsonToken.START_OBJECT) {
+                            element = projection.get();
+                        } else if (depth == elementDepth + 1) {
+                            nestedParent = token == JsonToken.START_OBJECT ? field : null;
+                        }
+                    }
+                    case END_OBJECT, END_ARRAY -> {
+                        if (depth == elementDepth && element != null) {
+                            if (decoded == null) {
+                                decoded = new ArrayList<>();
+                            }
+                            decoded.add(element.build());
+                            element = null;
+                        }
+                        depth--;
+                    }
+                    case FIELD_NAME -> {
+                        if (depth == elementDepth) {
+                            field = parser.currentName();
+                        } else if (depth == elementDepth + 1) {
+                            nestedField = parser.currentName();
+                        }
+                    }
+                    default -> {
+                        if (element != null && depth == elementDepth) {
+                            element.value(null, field, parser);
+                        } else if (element != null && depth == elementDepth + 1 && nestedParent != null) {
+                            element.value(nestedParent, nestedField, parser);
+                        }
+                    }
+                }
+            }
+            return decoded;
+        }
+    }
+
+    /**
+     * Collects the projected fields of one element. {@code parent} is the field holding the nested object the value
+     * belongs to, or {@code null} for the element's own fields; field names are canonicalized by the parser.
+     */
+    private interface ElementFields {
+
+        void value(String parent, String field, JsonParser parser) throws IOException;
+
+        Object build();
+    }
+
+    private static final class RepositoryFields implements ElementFields {
+
+        private String name;
+        private Boolean fork;
+        private Instant pushedAt;
+
+        @Override
+        public void value(final String parent, final String field, final JsonParser parser) throws IOException {
+            if (parent != null || parser.currentToken() == JsonToken.VALUE_NULL) {
+                return;
+            }
+            switch (field) {
+                case "name" -> name = parser.getText();
+                case "fork" -> fork = parser.getBooleanValue();
+                case "pushed_at" -> pushedAt = parseInstant(parser.getText());
+                default -> {
+                }
+            }
+        }
+
+        @Override
+        public Object build() {
+            return new RepositoryDto(name, fork, pushedAt);
+        }
+
+        private static Instant parseInstant(final String text) {
+            try {
+                return Instant.parse(text);
+            } catch (DateTimeParseException ex) {
+                throw new DecodingException("JSON decoding error: " + ex.getMessage(), ex);
+            }
+        }
+    }
+
+    private static final class BranchFields implements ElementFields {
+
+        private String name;
+        private String sha;
+
+        @Override
+        public void value(final String parent, final String field, final JsonParser parser) throws IOException {
+            if (parent == null && "name".equals(field)) {
+                name = parser.getText();
+            } else if ("commit".equals(parent) && "sha".equals(field)) {
+                sha = parser.getText();
+            }
+        }
+
+        @Override
+        public Object build() {
+            return new BranchWithCommitsDto(name, new CommitDto(sha));
+        }
+    }
+}
@@ -1,20 +1,194 @@
 package com.ghfetcher.config;
 
-import org.springframework.beans.factory.annotation.Value;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ghfetcher.admission.AdmissionControl;
+import com.ghfetcher.cache.ConditionalRequestCache;
+import com.ghfetcher.codec.GithubJsonDecoder;
+import com.ghfetcher.metrics.UpstreamCallMetrics;
+import com.ghfetcher.metrics.UpstreamWaitTracker;
+import com.ghfetcher.persistence.FileSnapshotStore;
+import com.ghfetcher.persistence.SnapshotStore;
+import com.ghfetcher.ratelimit.RateLimitScheduler;
+import com.ghfetcher.ratelimit.TokenPool;
+import com.ghfetcher.resilience.CircuitBreaker;
+import com.ghfetcher.resilience.GraphQlErrorStatus;
+import com.ghfetcher.resilience.UpstreamHedging;
+import com.ghfetcher.resilience.UpstreamRetries;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+import io.netty.channel.ChannelOption;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.web.client.RestClient;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 @Configuration
+@EnableScheduling
+@RequiredArgsConstructor
+@EnableConfigurationProperties(GithubProperties.class)
 class Config {
 
-    @Value("${service.github.url}")
-    private String gitHubUrl;
+    private final GithubProperties githubProperties;
+
+    @Bean
+    public ConditionalRequestCache conditionalRequestCache(MeterRegistry meterRegistry) {
+        GithubProperties.Cache cache = githubProperties.cache();
+        return new ConditionalRequestCache(cache.maxEntries(), cache.maxBytes().toBytes(),
+                cache.maxEntryBytes().toBytes(), meterRegistry);
+    }
+
+    @Bean
+    public RateLimitScheduler rateLimitScheduler(MeterRegistry meterRegistry) {
+        TokenPool tokenPool = new TokenPool(githubProperties.allTokens(), meterRegistry);
+        return new RateLimitScheduler(githubProperties.rateLimit(), tokenPool, meterRegistry);
+    }
+
+    @Bean
+    public UpstreamRetries upstreamRetries(RateLimitScheduler rateLimitScheduler, MeterRegistry meterRegistry) {
+        GithubProperties.Resilience resilience = githubProperties.resilience();
+        CircuitBreaker circuitBreaker = new CircuitBreaker(resilience.failureThreshold(), resilience.openDuration(),
+                meterRegistry);
+        return new UpstreamRetries(resilience, rateLimitScheduler, circuitBreaker, meterRegistry);
+    }
 
     @Bean
-    public WebClient webClient() {
-        return WebClient.builder()
-                .baseUrl(gitHubUrl)
+    public UpstreamHedging upstreamHedging(RateLimitScheduler rateLimitScheduler, MeterRegistry meterRegistry) {
+        return new UpstreamHedging(githubProperties.resilience(), rateLimitScheduler, meterRegistry);
+    }
+
+    @Bean
+    public GraphQlErrorStatus graphQlErrorStatus(ObjectMapper objectMapper) {
+        return new GraphQlErrorStatus(objectMapper);
+    }
+
+    /**
+     * Pool metrics (active, idle, pending acquires and acquire time) are published under
+     * {@code reactor.netty.connection.provider.*} with {@code name=github}.
+     */
+    @Bean(destroyMethod = "dispose")
+    public ConnectionProvider githubConnectionProvider() {
+        GithubProperties.Http http = githubProperties.http();
+        return ConnectionProvider.builder("github")
+                .maxConnections(http.maxConnections())
+                .pendingAcquireMaxCount(http.pendingAcquireMaxCount())
+                .pendingAcquireTimeout(http.pendingAcquireTimeout())
+                .maxIdleTime(http.maxIdleTime())
+                .maxLifeTime(http.maxLifeTime())
+                .evictInBackground(http.evictionInterval())
+                .metrics(true)
                 .build();
     }
-}
\ No newline at end of file
+
+    /**
+     * Threads of the {@code virtual-threads} client: one virtual thread per upstream call or listing.
+     */
+    @Bean(destroyMethod = "close")
+    @ConditionalOnProperty(prefix = "service.github", name = "client", havingValue = "virtual-threads")
+    public ExecutorService githubVirtualThreads() {
+        return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("github-vt-", 0).factory());
+    }
+
+    /**
+     * Blocking client of the {@code virtual-threads} client on the JDK {@link java.net.http.HttpClient}, observed
+     * like the {@link WebClient} and decoding with the application's {@link ObjectMapper}.
+     */
+    @Bean
+    @ConditionalOnProperty(prefix = "service.github", name = "client", havingValue = "virtual-threads")
+    public RestClient githubRestClient(ExecutorService githubVirtualThreads, ObjectMapper objectMapper,
+                                       ObservationRegistry observationRegistry) {
+        GithubProperties.Http http = githubProperties.http();
+        java.net.http.HttpClient.Version version = http.http2()
+                ? java.net.http.HttpClient.Version.HTTP_2
+                : java.net.http.HttpClient.Version.HTTP_1_1;
+        java.net.http.HttpClient httpClient = java.net.http.HttpClient.newBuilder()
+                .executor(githubVirtualThreads)
+                .connectTimeout(http.connectTimeout())
+                .version(version)
+                .build();
+        JdkClientHttpRequestFactory requestFactory = new JdkClientHttpRequestFactory(httpClient);
+        requestFactory.setReadTimeout(http.responseTimeout());
+        return RestClient.builder()
+                .baseUrl(githubProperties.url())
+                .requestFactory(requestFactory)
+                .messageConverters(converters ->
+                        converters.add(0, new MappingJackson2HttpMessageConverter(objectMapper)))
+                .observationRegistry(observationRegistry)
+                .build();
+    }
+
+    /**
+     * Closed by the container (inferred {@code close()}) so pending appends reach the file on shutdown.
+     */
+    @Bean
+    public SnapshotStore snapshotStore(MeterRegistry meterRegistry) {
+        GithubProperties.Persistence persistence = githubProperties.persistence();
+        return persistence.enabled() ? new FileSnapshotStore(persistence, meterRegistry) : SnapshotStore.DISABLED;
+    }
+
+    @Bean
+    public AdmissionControl admissionControl(MeterRegistry meterRegistry) {
+        return new AdmissionControl(githubProperties.admission(), meterRegistry);
+    }
+
+    @Bean
+    public UpstreamCallMetrics upstreamCallMetrics(MeterRegistry meterRegistry) {
+        return new UpstreamCallMetrics(meterRegistry);
+    }
+
+    /**
+     * Built from Spring Boot's {@link WebClient.Builder} so every upstream call is observed and carries the trace
+     * context of the incoming request. REST listings are decoded by {@link GithubJsonDecoder}, everything else by the
+     * default Jackson decoder. Filters run outermost first: wait tracking, conditional cache, retries and circuit
+     * breaking, rate limit scheduling, GraphQL error statuses, timeouts and hedging, latency sampling for admission
+     * control, and finally per-call metrics around the actual exchange.
+     */
+    @Bean
+    public WebClient webClient(WebClient.Builder webClientBuilder,
+                               ConnectionProvider githubConnectionProvider,
+                               ConditionalRequestCache conditionalRequestCache,
+                               UpstreamRetries upstreamRetries,
+                               RateLimitScheduler rateLimitScheduler,
+                               UpstreamHedging upstreamHedging,
+                               AdmissionControl admissionControl,
+                               GraphQlErrorStatus graphQlErrorStatus,
+                               UpstreamCallMetrics upstreamCallMetrics) {
+        return webClientBuilder
+                .baseUrl(githubProperties.url())
+                .clientConnector(new ReactorClientHttpConnector(httpClient(githubConnectionProvider)))
+                .codecs(codecs -> codecs.customCodecs().register(new GithubJsonDecoder()))
+                .filter(UpstreamWaitTracker.FILTER)
+                .filter(conditionalRequestCache)
+                .filter(upstreamRetries)
+                .filter(rateLimitScheduler)
+                .filter(graphQlErrorStatus)
+                .filter(upstreamHedging)
+                .filter(admissionControl.latencySampler())
+                .filter(upstreamCallMetrics)
+                .build();
+    }
+
+    private HttpClient httpClient(ConnectionProvider connectionProvider) {
+        GithubProperties.Http http = githubProperties.http();
+        HttpClient httpClient = HttpClient.create(connectionProvider)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) http.connectTimeout().toMillis())
+                .responseTimeout(http.responseTimeout())
+                .compress(http.compression());
+        if (http.http2()) {
+            httpClient = httpClient.protocol(HttpProtocol.H2, HttpProtocol.HTTP11);
+        }
+        return httpClient;
+    }
+}
@@ -0,0 +1,157 @@
+package com.ghfetcher.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * @param token  token the GitHub calls are made with
+ * @param tokens further tokens; calls are spread over all of them by remaining rate limit budget
+ */
+@ConfigurationProperties(prefix = "service.github")
+public record GithubProperties(
+        String url,
+        String token,
+        @DefaultValue List<String> tokens,
+        @DefaultValue("100") int pageSize,
+        @DefaultValue("4") int prefetchPages,
+        @DefaultValue Cache cache,
+        @DefaultValue RateLimit rateLimit,
+        @DefaultValue Http http,
+        @DefaultValue Batch batch,
+        @DefaultValue Refresh refresh,
+        @DefaultValue Persistence persistence,
+        @DefaultValue Resilience resilience,
+        @DefaultValue Admission admission
+) {
+
+    /**
+     * {@code token} followed by {@code tokens}.
+     */
+    public List<String> allTokens() {
+        List<String> all = new ArrayList<>();
+        if (token != null) {
+            all.add(token);
+        }
+        all.addAll(tokens);
+        return all;
+    }
+
+    /**
+     * @param maxEntries    upstream responses held for revalidation with conditional requests
+     * @param maxBytes      total size of the response bodies held for revalidation
+     * @param maxEntryBytes size from which a response body is not held at all
+     */
+    public record Cache(
+            @DefaultValue("10000") int maxEntries,
+            @DefaultValue("64MB") DataSize maxBytes,
+            @DefaultValue("1MB") DataSize maxEntryBytes,
+            @DefaultValue("50000") int maxRepositorySnapshots,
+            @DefaultValue("100000") int maxInternedNames
+    ) {
+    }
+
+    public record RateLimit(
+            @DefaultValue("32") int maxConcurrency,
+            @DefaultValue("8") int maxFanOut,
+            @DefaultValue("500") int lowWatermark,
+            @DefaultValue("3") int maxRetries
+    ) {
+    }
+
+    public record Http(
+            @DefaultValue("100") int maxConnections,
+            @DefaultValue("500") int pendingAcquireMaxCount,
+            @DefaultValue("5s") Duration pendingAcquireTimeout,
+            @DefaultValue("30s") Duration maxIdleTime,
+            @DefaultValue("5m") Duration maxLifeTime,
+            @DefaultValue("30s") Duration evictionInterval,
+            @DefaultValue("5s") Duration connectTimeout,
+            @DefaultValue("10s") Duration responseTimeout,
+            @DefaultValue("true") boolean compression,
+            @DefaultValue("false") boolean http2
+    ) {
+    }
+
+    public record Batch(
+            @DefaultValue("100") int maxUsers,
+            @DefaultValue("8") int maxConcurrentUsers
+    ) {
+    }
+
+    /**
+     * @param hotThreshold  request count, halved every {@code checkInterval}, from which a user is kept pre-warmed
+     * @param refreshAfter  age after which a hot user's snapshot is refreshed in the background
+     * @param maxStaleness  age after which a snapshot is no longer served and requests go upstream again
+     * @param minRemainingBudget rate limit budget below which background refreshes are skipped
+     */
+    public record Refresh(
+            @DefaultValue("true") boolean enabled,
+            @DefaultValue("5") int hotThreshold,
+            @DefaultValue("10000") int maxTrackedUsers,
+            @DefaultValue("1m") Duration refreshAfter,
+            @DefaultValue("10m") Duration maxStaleness,
+            @DefaultValue("30s") Duration checkInterval,
+            @DefaultValue("1000") long minRemainingBudget,
+            @DefaultValue("2") int concurrency
+    ) {
+    }
+
+    /**
+     * @param path   snapshot file, created on first use
+     * @param maxAge age after which stored results are dropped at the next compaction
+     */
+    public record Persistence(
+            @DefaultValue("false") boolean enabled,
+            @DefaultValue("data/ghfetcher.snapshots") String path,
+            @DefaultValue("10m") Duration compactionInterval,
+            @DefaultValue("7d") Duration maxAge
+    ) {
+    }
+
+    /**
+     * @param callTimeout      time an upstream call may take until its response headers arrive
+     * @param maxRetries       retries of a GET failing with a 5xx status, a timeout or a connection error
+     * @param initialBackoff   upper bound of the random delay before the first retry, doubled for every further one
+     * @param hedgeQuantile    latency quantile of the endpoint after which a duplicate GET is sent, 0 disables hedging
+     * @param minHedgeDelay    lower bound of the hedge delay
+     * @param failureThreshold consecutive failed calls that open the circuit
+     * @param openDuration     time the open circuit fails calls fast before letting a probe call through
+     */
+    public record Resilience(
+            @DefaultValue("5s") Duration callTimeout,
+            @DefaultValue("2") int maxRetries,
+            @DefaultValue("100ms") Duration initialBackoff,
+            @DefaultValue("2s") Duration maxBackoff,
+            @DefaultValue("0.95") double hedgeQuantile,
+            @DefaultValue("50ms") Duration minHedgeDelay,
+            @DefaultValue("10") int failureThreshold,
+            @DefaultValue("30s") Duration openDuration
+    ) {
+    }
+
+    /**
+     * @param initialLimit     incoming requests fetched at the same time before any upstream latency was observed
+     * @param minLimit         lower bound of the adaptive limit
+     * @param maxLimit         upper bound of the adaptive limit
+     * @param maxQueueSize     requests waiting for admission beyond which further requests are rejected
+     * @param maxQueueWait     time a request may wait for admission before it is rejected
+     * @param latencyTolerance factor by which recent upstream latency may exceed the baseline before the limit shrinks
+     * @param retryAfter       {@code Retry-After} sent with rejected requests
+     */
+    public record Admission(
+            @DefaultValue("true") boolean enabled,
+            @DefaultValue("64") int initialLimit,
+            @DefaultValue("8") int minLimit,
+            @DefaultValue("256") int maxLimit,
+            @DefaultValue("32") int maxQueueSize,
+            @DefaultValue("1s") Duration maxQueueWait,
+            @DefaultValue("2.0") double latencyTolerance,
+            @DefaultValue("1s") Duration retryAfter
+    ) {
+    }
+}
@@ -1,36 +1,73 @@
 package com.ghfetcher.controller;
 
+import com.ghfetcher.admission.AdmissionControl;
+import com.ghfetcher.dto.BatchRequestDto;
 import com.ghfetcher.dto.RepositoryResponseDto;
+import com.ghfetcher.dto.UserRepositoriesResponseDto;
 import com.ghfetcher.error.WrongAcceptHeaderException;
 import com.ghfetcher.service.GithubService;
+import com.ghfetcher.service.RepositoryQuery;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.log4j.Log4j2;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import reactor.core.publisher.Flux;
 
+import java.util.List;
+
 @Log4j2
 @RestController
 @RequiredArgsConstructor
 @RequestMapping("/api/github")
 public class GithubRestController {
 
+    private static final List<String> SUPPORTED_MEDIA_TYPES = List.of(
+            MediaType.APPLICATION_JSON_VALUE,
+            MediaType.APPLICATION_NDJSON_VALUE,
+            MediaType.TEXT_EVENT_STREAM_VALUE);
+
     private final GithubService githubService;
+    private final AdmissionControl admissionControl;
 
     @GetMapping("/{userName}")
     public Flux<RepositoryResponseDto> fetchUserRepositoriesWithBranches(
             @PathVariable String userName,
+            @RequestHeader(HttpHeaders.ACCEPT) String acceptHeader,
+            @RequestParam(defaultValue = "false") boolean namesOnly,
+            @RequestParam(defaultValue = "0") int offset,
+            @RequestParam(required = false) Integer limit,
+            @RequestParam(required = false) Integer maxBranches,
+            @RequestParam(required = false) String branchPrefix
+    ) {
+        checkAcceptHeader(acceptHeader);
+        RepositoryQuery query = new RepositoryQuery(namesOnly, offset, limit, maxBranches, branchPrefix);
+        return admissionControl.admit(() -> githubService.fetchUserRepositoriesWithBranches(userName, query));
+    }
+
+    @PostMapping("/batch")
+    public Flux<UserRepositoriesResponseDto> fetchUsersRepositoriesWithBranches(
+            @RequestBody BatchRequestDto batchRequest,
             @RequestHeader(HttpHeaders.ACCEPT) String acceptHeader
     ) {
-        if (!acceptHeader.equals(MediaType.APPLICATION_JSON_VALUE)) {
+        checkAcceptHeader(acceptHeader);
+        List<String> userNames = batchRequest.userNames() == null ? List.of() : batchRequest.userNames();
+        // every user of the batch is admitted separately by the service
+        return githubService.fetchUsersRepositoriesWithBranches(userNames);
+    }
+
+    private static void checkAcceptHeader(final String acceptHeader) {
+        if (!SUPPORTED_MEDIA_TYPES.contains(acceptHeader)) {
             log.error("Unsupported media type requested: : {}", acceptHeader);
-            throw new WrongAcceptHeaderException("Only JSON type is supported!");
+            throw new WrongAcceptHeaderException("Acceptable media types: %s."
+                    .formatted(String.join(", ", SUPPORTED_MEDIA_TYPES)));
         }
-        return githubService.fetchUserRepositoriesWithBranches(userName);
     }
 }
\ No newline at end of file
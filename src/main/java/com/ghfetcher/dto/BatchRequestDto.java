@@ -0,0 +1,6 @@
+package com.ghfetcher.dto;
+
+import java.util.List;
+
+public record BatchRequestDto(List<String> userNames) {
+}
@@ -1,4 +1,28 @@
 package com.ghfetcher.dto;
 
-public record RepositoryDto(String name, Boolean fork) {
-}
\ No newline at end of file
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * @param pushedAt time of the last push to any branch, used to tell whether previously fetched branches are still
+ *                 current; {@code null} when the client doesn't provide it
+ * @param branches branches already resolved by the client together with the repository, or {@code null} when they
+ *                 have to be requested separately (REST listing)
+ */
+public record RepositoryDto(String name, Boolean fork, @JsonProperty("pushed_at") Instant pushedAt,
+                            List<BranchWithCommitsDto> branches) {
+
+    public RepositoryDto(final String name, final Boolean fork) {
+        this(name, fork, null, null);
+    }
+
+    public RepositoryDto(final String name, final Boolean fork, final Instant pushedAt) {
+        this(name, fork, pushedAt, null);
+    }
+
+    public RepositoryDto(final String name, final Boolean fork, final List<BranchWithCommitsDto> branches) {
+        this(name, fork, null, branches);
+    }
+}
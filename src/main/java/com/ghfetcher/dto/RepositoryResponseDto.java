@@ -1,9 +1,11 @@
 package com.ghfetcher.dto;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.Builder;
 
 import java.util.List;
 
 @Builder
+@JsonInclude(JsonInclude.Include.NON_NULL)
 public record RepositoryResponseDto(String repositoryName, String ownerLogin, List<BranchWithShaDto> branches) {
 }
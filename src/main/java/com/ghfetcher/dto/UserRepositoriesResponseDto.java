@@ -0,0 +1,18 @@
+package com.ghfetcher.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.ghfetcher.error.ErrorResponseDto;
+
+import java.util.List;
+
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record UserRepositoriesResponseDto(String userName, List<RepositoryResponseDto> repositories, ErrorResponseDto error) {
+
+    public static UserRepositoriesResponseDto found(final String userName, final List<RepositoryResponseDto> repositories) {
+        return new UserRepositoriesResponseDto(userName, repositories, null);
+    }
+
+    public static UserRepositoriesResponseDto failed(final String userName, final ErrorResponseDto error) {
+        return new UserRepositoriesResponseDto(userName, null, error);
+    }
+}
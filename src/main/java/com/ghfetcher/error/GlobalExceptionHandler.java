@@ -1,6 +1,7 @@
 package com.ghfetcher.error;
 
 import lombok.extern.log4j.Log4j2;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ExceptionHandler;
@@ -17,10 +18,40 @@ public class GlobalExceptionHandler {
                 .body(new ErrorResponseDto(404, "User not found."));
     }
 
+    @ExceptionHandler(BatchTooLargeException.class)
+    public ResponseEntity<ErrorResponseDto> handleBatchTooLargeException(BatchTooLargeException exception) {
+        log.info("Rejected batch request: {}", exception.getMessage());
+        return ResponseEntity.status(400)
+                .body(new ErrorResponseDto(400, exception.getMessage()));
+    }
+
+    @ExceptionHandler(InvalidQueryException.class)
+    public ResponseEntity<ErrorResponseDto> handleInvalidQueryException(InvalidQueryException exception) {
+        log.info("Rejected query: {}", exception.getMessage());
+        return ResponseEntity.status(400)
+                .body(new ErrorResponseDto(400, exception.getMessage()));
+    }
+
+    @ExceptionHandler(UpstreamUnavailableException.class)
+    public ResponseEntity<ErrorResponseDto> handleUpstreamUnavailableException(UpstreamUnavailableException exception) {
+        log.warn("Failing fast while GitHub is unavailable: {}", exception.getMessage());
+        return ResponseEntity.status(503)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(Math.max(1, exception.getRetryAfter().toSeconds())))
+                .body(new ErrorResponseDto(503, exception.getMessage()));
+    }
+
+    @ExceptionHandler(ServiceOverloadedException.class)
+    public ResponseEntity<ErrorResponseDto> handleServiceOverloadedException(ServiceOverloadedException exception) {
+        log.warn("Shedding request: {}", exception.getMessage());
+        return ResponseEntity.status(503)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(Math.max(1, exception.getRetryAfter().toSeconds())))
+                .body(new ErrorResponseDto(503, exception.getMessage()));
+    }
+
     @ExceptionHandler(WrongAcceptHeaderException.class)
-    public ResponseEntity<WrongHeaderResponseDto> handleWrongHeaderException() {
+    public ResponseEntity<WrongHeaderResponseDto> handleWrongHeaderException(WrongAcceptHeaderException exception) {
         return ResponseEntity.status(406)
                 .contentType(MediaType.APPLICATION_JSON)
-                .body(new WrongHeaderResponseDto(406, "Wrong header 'accept'. Only JSON is acceptable."));
+                .body(new WrongHeaderResponseDto(406, "Wrong header 'accept'. " + exception.getMessage()));
     }
 }
\ No newline at end of file
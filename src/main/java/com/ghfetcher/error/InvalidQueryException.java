@@ -0,0 +1,7 @@
+package com.ghfetcher.error;
+
+public class InvalidQueryException extends RuntimeException {
+    public InvalidQueryException(String message) {
+        super(message);
+    }
+}
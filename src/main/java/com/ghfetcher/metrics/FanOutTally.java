@@ -0,0 +1,76 @@
+package com.ghfetcher.metrics;
+
+import reactor.util.context.ContextView;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts, for one incoming request, the repositories and branch listings its response was built from, so
+ * {@link FetchMetrics} can record the fan-out per request next to the service-wide counters.
+ * <p>
+ * Like {@link UpstreamWaitTracker}, the tally travels in the Reactor context under {@link #CONTEXT_KEY}. An execution
+ * shared by several requests counts into a tally of its own that is {@link #add(FanOutTally) added} to the tally of
+ * every request that waited on it.
+ */
+public final class FanOutTally {
+
+    public static final String CONTEXT_KEY = FanOutTally.class.getName();
+
+    private static final FanOutTally UNTRACKED = new FanOutTally();
+
+    private final AtomicLong repositories = new AtomicLong();
+    private final AtomicLong forksFiltered = new AtomicLong();
+    private final AtomicLong branchCalls = new AtomicLong();
+    private final AtomicLong branchCallsSkipped = new AtomicLong();
+
+    /**
+     * @return the tally of the request {@code context} belongs to, or one nobody reads when there is none
+     */
+    public static FanOutTally from(final ContextView context) {
+        return context.getOrDefault(CONTEXT_KEY, UNTRACKED);
+    }
+
+    public void add(final FanOutTally other) {
+        repositories.addAndGet(other.repositories());
+        forksFiltered.addAndGet(other.forksFiltered());
+        branchCalls.addAndGet(other.branchCalls());
+        branchCallsSkipped.addAndGet(other.branchCallsSkipped());
+    }
+
+    public long repositories() {
+        return repositories.get();
+    }
+
+    public long forksFiltered() {
+        return forksFiltered.get();
+    }
+
+    public long branchCalls() {
+        return branchCalls.get();
+    }
+
+    public long branchCallsSkipped() {
+        return branchCallsSkipped.get();
+    }
+
+    void repositorySeen(final boolean fork) {
+        if (this != UNTRACKED) {
+            repositories.incrementAndGet();
+            if (fork) {
+                forksFiltered.incrementAndGet();
+            }
+        }
+    }
+
+    void branchCallIssued() {
+        if (this != UNTRACKED) {
+            branchCalls.incrementAndGet();
+        }
+    }
+
+    void branchCallSkipped() {
+        if (this != UNTRACKED) {
+            branchCallsSkipped.incrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.ghfetcher.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fan-out counters, their distribution per request and the split of request duration into upstream wait and own
+ * processing.
+ */
+@Component
+public class FetchMetrics {
+
+    private final Counter repositoriesSeen;
+    private final Counter forksFiltered;
+    private final Counter branchCalls;
+    private final Counter branchCallsSkipped;
+    private final Counter snapshotsServed;
+    private final MeterRegistry meterRegistry;
+    private final Timer upstreamTime;
+    private final Timer processingTime;
+    private final DistributionSummary requestRepositories;
+    private final DistributionSummary requestForksFiltered;
+    private final DistributionSummary requestBranchCalls;
+    private final DistributionSummary requestBranchCallsSkipped;
+
+    public FetchMetrics(final MeterRegistry meterRegistry) {
+        this.repositoriesSeen = Counter.builder("github.fanout.repositories")
+                .description("Repositories listed by GitHub for requested users")
+                .register(meterRegistry);
+        this.forksFiltered = Counter.builder("github.fanout.forks.filtered")
+                .description("Forked repositories dropped from responses")
+                .register(meterRegistry);
+        this.branchCalls = Counter.builder("github.fanout.branch.calls")
+                .description("Branch listings requested from GitHub")
+                .register(meterRegistry);
+        this.branchCallsSkipped = Counter.builder("github.fanout.branch.calls.skipped")
+                .description("Branch listings served from a snapshot because the repository wasn't pushed since")
+                .register(meterRegistry);
+        this.snapshotsServed = Counter.builder("github.refresh.snapshots.served")
+                .description("Requests for hot users answered from the pre-warmed snapshot")
+                .register(meterRegistry);
+        this.meterRegistry = meterRegistry;
+        this.upstreamTime = requestPhaseTimer(meterRegistry, "upstream");
+        this.processingTime = requestPhaseTimer(meterRegistry, "processing");
+        this.requestRepositories = requestFanOutSummary(meterRegistry, "repositories");
+        this.requestForksFiltered = requestFanOutSummary(meterRegistry, "forks.filtered");
+        this.requestBranchCalls = requestFanOutSummary(meterRegistry, "branch.calls");
+        this.requestBranchCallsSkipped = requestFanOutSummary(meterRegistry, "branch.calls.skipped");
+    }
+
+    public void repositorySeen(final FanOutTally tally, final boolean fork) {
+        repositoriesSeen.increment();
+        if (fork) {
+            forksFiltered.increment();
+        }
+        tally.repositorySeen(fork);
+    }
+
+    public void branchCallIssued(final FanOutTally tally) {
+        branchCalls.increment();
+        tally.branchCallIssued();
+    }
+
+    public void branchCallSkipped(final FanOutTally tally) {
+        branchCallsSkipped.increment();
+        tally.branchCallSkipped();
+    }
+
+    public void snapshotServed() {
+        snapshotsServed.increment();
+    }
+
+    /**
+     * @param result {@code success}, {@code failure} or {@code skipped} when the rate limit budget was too low
+     */
+    public void backgroundRefresh(final String result) {
+        Counter.builder("github.refresh.runs")
+                .description("Background refreshes of hot users")
+                .tag("result", result)
+                .register(meterRegistry)
+                .increment();
+    }
+
+    public void requestCompleted(final long startNanos, final UpstreamWaitTracker tracker, final FanOutTally tally) {
+        long totalNanos = System.nanoTime() - startNanos;
+        long upstreamNanos = Math.min(tracker.upstreamNanos(), totalNanos);
+        upstreamTime.record(upstreamNanos, TimeUnit.NANOSECONDS);
+        processingTime.record(totalNanos - upstreamNanos, TimeUnit.NANOSECONDS);
+        requestRepositories.record(tally.repositories());
+        requestForksFiltered.record(tally.forksFiltered());
+        requestBranchCalls.record(tally.branchCalls());
+        requestBranchCallsSkipped.record(tally.branchCallsSkipped());
+    }
+
+    private static Timer requestPhaseTimer(final MeterRegistry meterRegistry, final String phase) {
+        return Timer.builder("github.request.phase")
+                .description("Duration of user requests split into upstream wait and own processing")
+                .tag("phase", phase)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    private static DistributionSummary requestFanOutSummary(final MeterRegistry meterRegistry, final String kind) {
+        return DistributionSummary.builder("github.request.fanout")
+                .description("Repositories and branch listings a single user request fanned out to")
+                .tag("kind", kind)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+}
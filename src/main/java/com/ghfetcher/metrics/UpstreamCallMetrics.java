@@ -0,0 +1,71 @@
+package com.ghfetcher.metrics;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+import org.springframework.web.reactive.function.client.ExchangeFunction;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Times each call that actually goes out to GitHub and counts the bytes received, tagged by endpoint (the URI
+ * template without base URL and query string) and status. Registered as the innermost WebClient filter, so cache
+ * lookups and rate limit queueing are not part of the latency.
+ */
+public class UpstreamCallMetrics implements ExchangeFilterFunction {
+
+    private static final String URI_TEMPLATE_ATTRIBUTE = WebClient.class.getName() + ".uriTemplate";
+
+    private final MeterRegistry meterRegistry;
+
+    public UpstreamCallMetrics(final MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public Mono<ClientResponse> filter(final ClientRequest request, final ExchangeFunction next) {
+        String endpoint = endpoint(request);
+        Timer.Sample sample = Timer.start(meterRegistry);
+        return next.exchange(request)
+                .doOnError(error -> sample.stop(callTimer(endpoint, "IO_ERROR")))
+                .map(response -> {
+                    sample.stop(callTimer(endpoint, String.valueOf(response.statusCode().value())));
+                    DistributionSummary receivedBytes = DistributionSummary.builder("github.upstream.response.bytes")
+                            .description("Response body bytes received from GitHub per call")
+                            .baseUnit("bytes")
+                            .tag("endpoint", endpoint)
+                            .register(meterRegistry);
+                    AtomicLong bytes = new AtomicLong();
+                    return response.mutate()
+                            .body(body -> body
+                                    .doOnNext(buffer -> bytes.addAndGet(buffer.readableByteCount()))
+                                    .doOnComplete(() -> receivedBytes.record(bytes.get())))
+                            .build();
+                });
+    }
+
+    private Timer callTimer(final String endpoint, final String status) {
+        return Timer.builder("github.upstream.requests")
+                .description("Latency of calls to GitHub until the response headers arrive")
+                .tag("endpoint", endpoint)
+                .tag("status", status)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    /**
+     * URI template of the call without base URL and query string, e.g. {@code /repos/{userName}/{repoName}/branches}.
+     */
+    public static String endpoint(final ClientRequest request) {
+        return request.attribute(URI_TEMPLATE_ATTRIBUTE)
+                .map(template -> template.toString()
+                        .replaceFirst("^[a-z]+://[^/]+", "")
+                        .split("\\?", 2)[0])
+                .orElse("unknown");
+    }
+}
@@ -0,0 +1,89 @@
+package com.ghfetcher.metrics;
+
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+import org.springframework.web.reactive.function.client.ExchangeFunction;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Measures, for one incoming request, the wall-clock time during which at least one upstream GitHub call was
+ * pending (queued for a rate limit permit, waiting for the response or streaming its body). Overlapping calls are
+ * counted once, so the rest of the request duration is time spent in our own processing.
+ * <p>
+ * The tracker travels in the Reactor context under {@link #CONTEXT_KEY}; {@link #FILTER} picks it up for every
+ * WebClient exchange. An execution shared by several requests gets a tracker of its own that the requests'
+ * trackers {@link #follow(UpstreamWaitTracker) follow}, so each of them is charged for the upstream calls it waited
+ * on, whether it started the execution or joined it.
+ */
+public final class UpstreamWaitTracker {
+
+    public static final String CONTEXT_KEY = UpstreamWaitTracker.class.getName();
+
+    public static final ExchangeFilterFunction FILTER = UpstreamWaitTracker::track;
+
+    private final List<UpstreamWaitTracker> followers = new ArrayList<>();
+    private int pendingCalls;
+    private long pendingSince;
+    private long upstreamNanos;
+
+    public synchronized long upstreamNanos() {
+        return pendingCalls > 0 ? upstreamNanos + System.nanoTime() - pendingSince : upstreamNanos;
+    }
+
+    /**
+     * Counts the calls pending on this tracker as pending on {@code follower} too, until {@link #unfollow}.
+     */
+    public synchronized void follow(final UpstreamWaitTracker follower) {
+        followers.add(follower);
+        if (pendingCalls > 0) {
+            follower.callStarted();
+        }
+    }
+
+    public synchronized void unfollow(final UpstreamWaitTracker follower) {
+        if (followers.remove(follower) && pendingCalls > 0) {
+            follower.callFinished();
+        }
+    }
+
+    private synchronized void callStarted() {
+        if (pendingCalls++ == 0) {
+            pendingSince = System.nanoTime();
+            followers.forEach(UpstreamWaitTracker::callStarted);
+        }
+    }
+
+    private synchronized void callFinished() {
+        if (--pendingCalls == 0) {
+            upstreamNanos += System.nanoTime() - pendingSince;
+            followers.forEach(UpstreamWaitTracker::callFinished);
+        }
+    }
+
+    private static Mono<ClientResponse> track(final ClientRequest request, final ExchangeFunction next) {
+        return Mono.deferContextual(context -> {
+            if (!context.hasKey(CONTEXT_KEY)) {
+                return next.exchange(request);
+            }
+            UpstreamWaitTracker tracker = context.get(CONTEXT_KEY);
+            AtomicBoolean finished = new AtomicBoolean();
+            Runnable finish = () -> {
+                if (finished.compareAndSet(false, true)) {
+                    tracker.callFinished();
+                }
+            };
+            tracker.callStarted();
+            return next.exchange(request)
+                    .map(response -> response.mutate()
+                            .body(body -> body.doFinally(signal -> finish.run()))
+                            .build())
+                    .doOnError(error -> finish.run())
+                    .doOnCancel(finish);
+        });
+    }
+}
@@ -0,0 +1,338 @@
+package com.ghfetcher.persistence;
+
+import com.ghfetcher.config.GithubProperties;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.log4j.Log4j2;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Append-only file of {@link StoredUser} records (see {@link SnapshotFormat}) with an in-memory index of the latest
+ * record per user. The index is built in the background at startup by scanning record headers, so the application
+ * starts immediately and lookups arriving during the scan wait for it; records are only decoded when read. A torn
+ * record at the end of the file (e.g. after a crash) ends the scan and is truncated. A file that cannot be read at all
+ * (e.g. written by an incompatible version) is moved aside, not overwritten, and the store starts empty.
+ * <p>
+ * Superseded and expired records are dropped by periodic compaction into a new file that atomically replaces the
+ * old one. All file access runs on one dedicated thread, which serializes appends, reads and compaction.
+ */
+@Log4j2
+public class FileSnapshotStore implements SnapshotStore, AutoCloseable {
+
+    private static final Duration CLOSE_TIMEOUT = Duration.ofSeconds(5);
+
+    private final Path path;
+    private final Duration maxAge;
+    private final Clock clock;
+    private final Scheduler io = Schedulers.newSingle("snapshot-store");
+    private final Map<String, IndexEntry> index = new ConcurrentHashMap<>();
+    private final Disposable compaction;
+
+    private volatile boolean loaded;
+    private volatile long fileSize;
+    private long liveBytes;
+    private FileChannel channel;
+
+    public FileSnapshotStore(final GithubProperties.Persistence settings, final MeterRegistry meterRegistry) {
+        this(settings, meterRegistry, Clock.systemUTC());
+    }
+
+    FileSnapshotStore(final GithubProperties.Persistence settings, final MeterRegistry meterRegistry, final Clock clock) {
+        this.path = Path.of(settings.path());
+        this.maxAge = settings.maxAge();
+        this.clock = clock;
+        io.schedule(this::open);
+        long compactionMillis = settings.compactionInterval().toMillis();
+        this.compaction = io.schedulePeriodically(this::compactIfNeeded, compactionMillis, compactionMillis,
+                TimeUnit.MILLISECONDS);
+        Gauge.builder("github.persistence.users", index, Map::size)
+                .description("Users with a result in the snapshot file")
+                .register(meterRegistry);
+        Gauge.builder("github.persistence.file.bytes", this, store -> store.fileSize)
+                .description("Size of the snapshot file, including records not compacted yet")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Reads run on the file thread after the startup scan, which is queued first, so a lookup made while the scan is
+     * still running waits for it instead of missing the user.
+     */
+    @Override
+    public Mono<StoredUser> load(final String userName) {
+        return Mono.defer(() -> loaded && !index.containsKey(userName)
+                ? Mono.empty()
+                : Mono.fromCallable(() -> read(userName)).subscribeOn(io));
+    }
+
+    @Override
+    public void save(final StoredUser user) {
+        try {
+            io.schedule(() -> append(user));
+        } catch (RejectedExecutionException ex) {
+            log.debug("Snapshot store closed, dropping snapshot of {}", user.userName());
+        }
+    }
+
+    @Override
+    public void close() {
+        compaction.dispose();
+        try {
+            Mono.fromRunnable(this::closeChannel).subscribeOn(io).block(CLOSE_TIMEOUT);
+        } finally {
+            io.dispose();
+        }
+    }
+
+    /**
+     * Blocks until every file operation queued so far has run.
+     */
+    void awaitPendingOperations() {
+        Mono.empty().subscribeOn(io).block(CLOSE_TIMEOUT);
+    }
+
+    void compactNow() {
+        Mono.fromRunnable(() -> compact(clock.instant().minus(maxAge))).subscribeOn(io).block(CLOSE_TIMEOUT);
+    }
+
+    long fileSize() {
+        return fileSize;
+    }
+
+    private void open() {
+        long start = System.nanoTime();
+        try {
+            if (path.getParent() != null) {
+                Files.createDirectories(path.getParent());
+            }
+            channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            if (channel.size() == 0) {
+                writeFully(channel, SnapshotFormat.fileHeader(), 0);
+                fileSize = SnapshotFormat.FILE_HEADER_SIZE;
+            } else {
+                scan();
+            }
+            loaded = true;
+            log.info("Loaded {} user snapshots from {} in {} ms", index.size(), path,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        } catch (IOException ex) {
+            log.warn("Snapshot file {} is unusable, starting with an empty store: {}", path, ex.toString());
+            moveAsideAndReset();
+        }
+    }
+
+    private void scan() throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(SnapshotFormat.FILE_HEADER_SIZE);
+        readFully(channel, header, 0);
+        if (!SnapshotFormat.isValidFileHeader(header.flip())) {
+            throw new IOException("unrecognized file header");
+        }
+        long size = channel.size();
+        long position = SnapshotFormat.FILE_HEADER_SIZE;
+        ByteBuffer recordHeader = ByteBuffer.allocate(SnapshotFormat.RECORD_HEADER_SIZE);
+        while (position + SnapshotFormat.RECORD_HEADER_SIZE <= size) {
+            readFully(channel, recordHeader.clear(), position);
+            int payloadLength = recordHeader.flip().getInt();
+            int checksum = recordHeader.getInt();
+            if (payloadLength <= 0 || position + SnapshotFormat.RECORD_HEADER_SIZE + payloadLength > size) {
+                break;
+            }
+            ByteBuffer payload = ByteBuffer.allocate(payloadLength);
+            readFully(channel, payload, position + SnapshotFormat.RECORD_HEADER_SIZE);
+            if (SnapshotFormat.checksum(payload.flip()) != checksum) {
+                break;
+            }
+            StoredUser user = SnapshotFormat.decodeHeader(payload);
+            index(user.userName(), new IndexEntry(position, payloadLength, user.fetchedAt()));
+            position += SnapshotFormat.RECORD_HEADER_SIZE + payloadLength;
+        }
+        if (position < size) {
+            log.warn("Truncating {} bytes of incomplete snapshot records from {}", size - position, path);
+            channel.truncate(position);
+        }
+        fileSize = position;
+    }
+
+    private StoredUser read(final String userName) throws IOException {
+        IndexEntry entry = index.get(userName);
+        if (entry == null || channel == null) {
+            return null;
+        }
+        ByteBuffer payload = ByteBuffer.allocate(entry.payloadLength());
+        readFully(channel, payload, entry.offset() + SnapshotFormat.RECORD_HEADER_SIZE);
+        return SnapshotFormat.decode(payload.flip());
+    }
+
+    private void append(final StoredUser user) {
+        if (channel == null) {
+            return;
+        }
+        try {
+            ByteBuffer record = SnapshotFormat.encode(user);
+            int recordSize = record.remaining();
+            writeFully(channel, record, fileSize);
+            index(user.userName(), new IndexEntry(fileSize, recordSize - SnapshotFormat.RECORD_HEADER_SIZE,
+                    user.fetchedAt()));
+            fileSize += recordSize;
+        } catch (IOException ex) {
+            log.warn("Could not append snapshot of {} to {}: {}", user.userName(), path, ex.toString());
+        }
+    }
+
+    private void index(final String userName, final IndexEntry entry) {
+        IndexEntry previous = index.put(userName, entry);
+        liveBytes += entry.recordSize() - (previous == null ? 0 : previous.recordSize());
+    }
+
+    /**
+     * Compacts once superseded records take up more than half of the file or some records have expired.
+     */
+    private void compactIfNeeded() {
+        if (channel == null) {
+            return;
+        }
+        Instant cutoff = clock.instant().minus(maxAge);
+        long garbage = fileSize - SnapshotFormat.FILE_HEADER_SIZE - liveBytes;
+        boolean expired = index.values().stream().anyMatch(entry -> entry.fetchedAt().isBefore(cutoff));
+        if (garbage > liveBytes || expired) {
+            compact(cutoff);
+        }
+    }
+
+    private void compact(final Instant cutoff) {
+        if (channel == null) {
+            return;
+        }
+        Path compacted = path.resolveSibling(path.getFileName() + ".compacting");
+        long sizeBefore = fileSize;
+        try {
+            Map<String, IndexEntry> compactedIndex = new HashMap<>();
+            long position;
+            try (FileChannel out = FileChannel.open(compacted, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                writeFully(out, SnapshotFormat.fileHeader(), 0);
+                position = SnapshotFormat.FILE_HEADER_SIZE;
+                for (Map.Entry<String, IndexEntry> user : index.entrySet()) {
+                    IndexEntry entry = user.getValue();
+                    if (entry.fetchedAt().isBefore(cutoff)) {
+                        continue;
+                    }
+                    ByteBuffer record = ByteBuffer.allocate(entry.recordSize());
+                    readFully(channel, record, entry.offset());
+                    writeFully(out, record.flip(), position);
+                    compactedIndex.put(user.getKey(), new IndexEntry(position, entry.payloadLength(), entry.fetchedAt()));
+                    position += entry.recordSize();
+                }
+                out.force(true);
+            }
+            channel.close();
+            Files.move(compacted, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            index.keySet().retainAll(compactedIndex.keySet());
+            index.putAll(compactedIndex);
+            fileSize = position;
+            liveBytes = position - SnapshotFormat.FILE_HEADER_SIZE;
+            log.info("Compacted {} from {} to {} bytes", path, sizeBefore, position);
+        } catch (IOException ex) {
+            log.warn("Compaction of {} failed: {}", path, ex.toString());
+            try {
+                Files.deleteIfExists(compacted);
+                if (!channel.isOpen()) {
+                    channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+                }
+            } catch (IOException reopenFailure) {
+                log.warn("Snapshot file {} could not be reopened, persistence is off: {}", path, reopenFailure.toString());
+                channel = null;
+                loaded = false;
+            }
+        }
+    }
+
+    /**
+     * Keeps the unreadable file for inspection or a downgrade and starts a new one; persistence stays off if the file
+     * can be neither moved nor recreated.
+     */
+    private void moveAsideAndReset() {
+        index.clear();
+        liveBytes = 0;
+        closeChannel();
+        channel = null;
+        Path aside = path.resolveSibling(path.getFileName() + ".unreadable-" + clock.millis());
+        try {
+            Files.move(path, aside);
+            log.warn("Moved unusable snapshot file {} to {}", path, aside);
+        } catch (IOException ex) {
+            log.warn("Snapshot file {} could not be moved aside, persistence is off: {}", path, ex.toString());
+            return;
+        }
+        try {
+            channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+            writeFully(channel, SnapshotFormat.fileHeader(), 0);
+            fileSize = SnapshotFormat.FILE_HEADER_SIZE;
+            loaded = true;
+        } catch (IOException ex) {
+            log.warn("Snapshot file {} could not be created, persistence is off: {}", path, ex.toString());
+            closeChannel();
+            channel = null;
+        }
+    }
+
+    private void closeChannel() {
+        if (channel == null) {
+            return;
+        }
+        try {
+            channel.force(false);
+            channel.close();
+        } catch (IOException ex) {
+            log.warn("Could not close snapshot file {}: {}", path, ex.toString());
+        }
+    }
+
+    private static void readFully(final FileChannel channel, final ByteBuffer buffer, final long position)
+            throws IOException {
+        long offset = position;
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, offset);
+            if (read < 0) {
+                throw new EOFException("unexpected end of snapshot file");
+            }
+            offset += read;
+        }
+    }
+
+    private static void writeFully(final FileChannel channel, final ByteBuffer buffer, final long position)
+            throws IOException {
+        long offset = position;
+        while (buffer.hasRemaining()) {
+            offset += channel.write(buffer, offset);
+        }
+    }
+
+    private record IndexEntry(long offset, int payloadLength, Instant fetchedAt) {
+
+        private int recordSize() {
+            return SnapshotFormat.RECORD_HEADER_SIZE + payloadLength;
+        }
+    }
+}
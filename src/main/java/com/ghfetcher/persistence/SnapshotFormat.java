@@ -0,0 +1,159 @@
+package com.ghfetcher.persistence;
+
+import com.ghfetcher.dto.BranchWithShaDto;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Binary layout of the snapshot file: a header ({@code GHFS} magic and a version byte) followed by appended records.
+ * Every record is its payload length and CRC32 followed by the payload:
+ * <pre>
+ * user name, fetched at (epoch millis), repository count,
+ *   per repository: name, pushed at (epoch millis, {@link Long#MIN_VALUE} when unknown), branch count,
+ *     per branch: name, commit sha
+ * </pre>
+ * Strings are written as modified UTF-8. Hex SHAs are stored as their raw bytes (20 for SHA-1) behind a length
+ * byte; {@code 0} marks a missing SHA and {@code -1} one that is not lowercase hex and is stored as a string.
+ */
+final class SnapshotFormat {
+
+    static final int MAGIC = 0x47484653;
+    static final byte VERSION = 1;
+    static final int FILE_HEADER_SIZE = Integer.BYTES + 1;
+    static final int RECORD_HEADER_SIZE = 2 * Integer.BYTES;
+
+    private static final long NO_TIMESTAMP = Long.MIN_VALUE;
+    private static final byte NO_SHA = 0;
+    private static final byte TEXT_SHA = -1;
+    private static final HexFormat HEX = HexFormat.of();
+
+    private SnapshotFormat() {
+    }
+
+    static ByteBuffer fileHeader() {
+        return ByteBuffer.allocate(FILE_HEADER_SIZE).putInt(MAGIC).put(VERSION).flip();
+    }
+
+    static boolean isValidFileHeader(final ByteBuffer header) {
+        return header.remaining() == FILE_HEADER_SIZE && header.getInt() == MAGIC && header.get() == VERSION;
+    }
+
+    /**
+     * Complete record, header included, ready to be appended.
+     */
+    static ByteBuffer encode(final StoredUser user) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeUTF(user.userName());
+        out.writeLong(user.fetchedAt().toEpochMilli());
+        out.writeInt(user.repositories().size());
+        for (StoredUser.Repository repository : user.repositories()) {
+            out.writeUTF(repository.name());
+            out.writeLong(repository.pushedAt() == null ? NO_TIMESTAMP : repository.pushedAt().toEpochMilli());
+            out.writeInt(repository.branches().size());
+            for (BranchWithShaDto branch : repository.branches()) {
+                out.writeUTF(branch.name());
+                writeSha(out, branch.sha());
+            }
+        }
+        byte[] payload = bytes.toByteArray();
+        return ByteBuffer.allocate(RECORD_HEADER_SIZE + payload.length)
+                .putInt(payload.length)
+                .putInt(checksum(ByteBuffer.wrap(payload)))
+                .put(payload)
+                .flip();
+    }
+
+    static StoredUser decode(final ByteBuffer payload) throws IOException {
+        DataInputStream in = input(payload);
+        String userName = in.readUTF();
+        Instant fetchedAt = Instant.ofEpochMilli(in.readLong());
+        int repositoryCount = in.readInt();
+        List<StoredUser.Repository> repositories = new ArrayList<>(repositoryCount);
+        for (int i = 0; i < repositoryCount; i++) {
+            String name = in.readUTF();
+            long pushedAt = in.readLong();
+            int branchCount = in.readInt();
+            List<BranchWithShaDto> branches = new ArrayList<>(branchCount);
+            for (int j = 0; j < branchCount; j++) {
+                branches.add(new BranchWithShaDto(in.readUTF(), readSha(in)));
+            }
+            repositories.add(new StoredUser.Repository(name,
+                    pushedAt == NO_TIMESTAMP ? null : Instant.ofEpochMilli(pushedAt), branches));
+        }
+        return new StoredUser(userName, fetchedAt, repositories);
+    }
+
+    /**
+     * Reads only the leading user name and fetch time, which is all the index needs.
+     */
+    static StoredUser decodeHeader(final ByteBuffer payload) throws IOException {
+        DataInputStream in = input(payload);
+        return new StoredUser(in.readUTF(), Instant.ofEpochMilli(in.readLong()), List.of());
+    }
+
+    static int checksum(final ByteBuffer payload) {
+        CRC32 crc = new CRC32();
+        crc.update(payload.duplicate());
+        return (int) crc.getValue();
+    }
+
+    private static void writeSha(final DataOutputStream out, final String sha) throws IOException {
+        if (sha == null) {
+            out.writeByte(NO_SHA);
+        } else if (isLowercaseHex(sha)) {
+            byte[] raw = HEX.parseHex(sha);
+            out.writeByte(raw.length);
+            out.write(raw);
+        } else {
+            out.writeByte(TEXT_SHA);
+            out.writeUTF(sha);
+        }
+    }
+
+    private static String readSha(final DataInputStream in) throws IOException {
+        byte length = in.readByte();
+        if (length == NO_SHA) {
+            return null;
+        }
+        if (length == TEXT_SHA) {
+            return in.readUTF();
+        }
+        byte[] raw = new byte[length];
+        in.readFully(raw);
+        return HEX.formatHex(raw);
+    }
+
+    private static boolean isLowercaseHex(final String sha) {
+        if (sha.isEmpty() || sha.length() % 2 != 0 || sha.length() / 2 > Byte.MAX_VALUE) {
+            return false;
+        }
+        for (int i = 0; i < sha.length(); i++) {
+            char c = sha.charAt(i);
+            if ((c < '0' || c > '9') && (c < 'a' || c > 'f')) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static DataInputStream input(final ByteBuffer payload) {
+        if (payload.hasArray()) {
+            return new DataInputStream(new ByteArrayInputStream(
+                    payload.array(), payload.arrayOffset() + payload.position(), payload.remaining()));
+        }
+        byte[] bytes = new byte[payload.remaining()];
+        payload.duplicate().get(bytes);
+        return new DataInputStream(new ByteArrayInputStream(bytes));
+    }
+}
@@ -0,0 +1,30 @@
+package com.ghfetcher.persistence;
+
+import reactor.core.publisher.Mono;
+
+/**
+ * Keeps the last good result of users across restarts so they can be served before GitHub has been asked again.
+ */
+public interface SnapshotStore {
+
+    SnapshotStore DISABLED = new SnapshotStore() {
+        @Override
+        public Mono<StoredUser> load(final String userName) {
+            return Mono.empty();
+        }
+
+        @Override
+        public void save(final StoredUser user) {
+        }
+    };
+
+    /**
+     * Latest stored result of the user, once the store has finished loading; empty when there is none.
+     */
+    Mono<StoredUser> load(String userName);
+
+    /**
+     * Stores the result asynchronously, replacing the previous one of the same user.
+     */
+    void save(StoredUser user);
+}
@@ -0,0 +1,15 @@
+package com.ghfetcher.persistence;
+
+import com.ghfetcher.dto.BranchWithShaDto;
+
+import java.time.Instant;
+import java.util.List;
+
+public record StoredUser(String userName, Instant fetchedAt, List<Repository> repositories) {
+
+    /**
+     * @param pushedAt {@code pushed_at} of the repository when its branches were fetched, {@code null} when unknown
+     */
+    public record Repository(String name, Instant pushedAt, List<BranchWithShaDto> branches) {
+    }
+}
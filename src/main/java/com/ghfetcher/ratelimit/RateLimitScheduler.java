@@ -0,0 +1,378 @@
+package com.ghfetcher.ratelimit;
+
+import com.ghfetcher.config.GithubProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+import org.springframework.web.reactive.function.client.ExchangeFunction;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Gates every upstream GitHub call behind a shared budget derived from the {@code X-RateLimit-*} and
+ * {@code Retry-After} response headers. Calls over the budget wait in a queue instead of failing, and
+ * responses rejected for rate limiting are retried once the budget resets.
+ * <p>
+ * With several tokens configured the budget is tracked per token in a {@link TokenPool}: every permit is bound to
+ * the token with the most budget left, whose {@code Authorization} header the call is sent with, and the shared
+ * budget is the sum over the tokens that are not benched.
+ * <p>
+ * A permit is held until the response body has been consumed or released, not just until the response headers
+ * arrived, so {@code maxConcurrency} also bounds the connections still streaming a body.
+ * <p>
+ * Waiting calls are queued per fairness key (taken from the Reactor context under {@link #FAIRNESS_KEY}, usually
+ * the user name) and permits are handed out round-robin across keys, so one user with hundreds of repositories
+ * cannot starve the others.
+ */
+@Log4j2
+public class RateLimitScheduler implements ExchangeFilterFunction {
+
+    public static final String FAIRNESS_KEY = RateLimitScheduler.class.getName() + ".fairnessKey";
+
+    static final String REMAINING_HEADER = "X-RateLimit-Remaining";
+    static final String RESET_HEADER = "X-RateLimit-Reset";
+    private static final Duration SECONDARY_LIMIT_BACKOFF = Duration.ofMinutes(1);
+
+    private final GithubProperties.RateLimit settings;
+    private final TokenPool tokenPool;
+    private final Clock clock;
+    private final Counter throttledResponses;
+
+    private final Map<String, Deque<Waiter>> waiters = new LinkedHashMap<>();
+    private int queued;
+    private int inFlight;
+    private boolean drainScheduled;
+
+    public RateLimitScheduler(final GithubProperties.RateLimit settings, final MeterRegistry meterRegistry) {
+        this(settings, new TokenPool(List.of(), meterRegistry), meterRegistry);
+    }
+
+    public RateLimitScheduler(final GithubProperties.RateLimit settings, final TokenPool tokenPool,
+                              final MeterRegistry meterRegistry) {
+        this(settings, tokenPool, meterRegistry, Clock.systemUTC());
+    }
+
+    RateLimitScheduler(final GithubProperties.RateLimit settings, final TokenPool tokenPool,
+                       final MeterRegistry meterRegistry, final Clock clock) {
+        this.settings = settings;
+        this.tokenPool = tokenPool;
+        this.clock = clock;
+        this.throttledResponses = Counter.builder("github.ratelimit.throttled")
+                .description("Upstream responses rejected by GitHub rate limiting and queued for retry")
+                .register(meterRegistry);
+        Gauge.builder("github.ratelimit.remaining", this, RateLimitScheduler::remainingBudget)
+                .description("Requests left in the current GitHub rate limit window, -1 when unknown")
+                .register(meterRegistry);
+        Gauge.builder("github.ratelimit.concurrency.limit", this, RateLimitScheduler::concurrencyLimit)
+                .description("Current number of upstream calls allowed in flight")
+                .register(meterRegistry);
+        Gauge.builder("github.ratelimit.in.flight", this, RateLimitScheduler::inFlight)
+                .description("Upstream calls currently holding a permit")
+                .register(meterRegistry);
+        Gauge.builder("github.ratelimit.queue.depth", this, RateLimitScheduler::queueDepth)
+                .description("Upstream calls waiting for a permit")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public Mono<ClientResponse> filter(final ClientRequest request, final ExchangeFunction next) {
+        return exchange(request, next, 0);
+    }
+
+    /**
+     * Concurrency to use when fanning out the upstream calls of a single incoming request.
+     */
+    public int fanOutConcurrency() {
+        return Math.max(1, Math.min(settings.maxFanOut(), concurrencyLimit()));
+    }
+
+    public Mono<Permit> acquire() {
+        return Mono.deferContextual(context -> acquire(context.getOrDefault(FAIRNESS_KEY, "")));
+    }
+
+    public Mono<Permit> acquire(final String fairnessKey) {
+        return Mono.create(sink -> {
+            Waiter waiter = new Waiter(fairnessKey, sink);
+            sink.onCancel(waiter::cancel);
+            synchronized (this) {
+                waiters.computeIfAbsent(fairnessKey, key -> new ArrayDeque<>()).add(waiter);
+                queued++;
+            }
+            drain();
+        });
+    }
+
+    /**
+     * Runs {@code call} with a permit that is held until the body of its response has been consumed or released, or
+     * until the call failed or was cancelled.
+     */
+    public Mono<ClientResponse> withPermit(final Function<Permit, Mono<ClientResponse>> call) {
+        return Mono.usingWhen(acquire(),
+                permit -> call.apply(permit).map(response -> response.mutate()
+                        .body(body -> body.doFinally(signal -> permit.release()))
+                        .build()),
+                permit -> Mono.empty(),
+                (permit, error) -> Mono.fromRunnable(permit::release),
+                permit -> Mono.fromRunnable(permit::release));
+    }
+
+    /**
+     * Records the rate limit headers of a response made with the pool's first (or only) credential.
+     */
+    public void record(final HttpStatusCode status, final HttpHeaders headers) {
+        record(tokenPool.defaultCredential(), status, headers);
+    }
+
+    /**
+     * Records the rate limit headers of a response made outside the WebClient filter chain with the permit's token.
+     */
+    public void record(final Permit permit, final HttpStatusCode status, final HttpHeaders headers) {
+        record(permit.credential, status, headers);
+    }
+
+    void record(final TokenPool.Credential credential, final HttpStatusCode status, final HttpHeaders headers) {
+        Instant now = clock.instant();
+        Long remainingHeader = parseLong(headers.getFirst(REMAINING_HEADER));
+        Long resetHeader = parseLong(headers.getFirst(RESET_HEADER));
+        Long retryAfterHeader = parseLong(headers.getFirst(HttpHeaders.RETRY_AFTER));
+        tokenPool.update(credential, remainingHeader, resetHeader == null ? null : Instant.ofEpochSecond(resetHeader));
+        if (retryAfterHeader != null) {
+            tokenPool.benchUntil(credential, now.plusSeconds(retryAfterHeader));
+        } else if (remainingHeader != null && remainingHeader == 0) {
+            tokenPool.benchUntil(credential, tokenPool.resetAt(credential));
+        } else if (isRateLimited(status, headers)) {
+            tokenPool.benchUntil(credential, now.plus(SECONDARY_LIMIT_BACKOFF));
+        }
+    }
+
+    /**
+     * Requests left across all tokens that are not benched, -1 when unknown.
+     */
+    public long remainingBudget() {
+        return tokenPool.remainingBudget(clock.instant());
+    }
+
+    /**
+     * Whether the budget is unknown or still at or above the low watermark, i.e. extra calls (retries, hedges) can
+     * be afforded.
+     */
+    public boolean hasSpareBudget() {
+        long remaining = remainingBudget();
+        return remaining < 0 || remaining >= settings.lowWatermark();
+    }
+
+    public int concurrencyLimit() {
+        long remaining = remainingBudget();
+        if (remaining < 0 || remaining >= settings.lowWatermark()) {
+            return settings.maxConcurrency();
+        }
+        long scaled = remaining * settings.maxConcurrency() / Math.max(1, settings.lowWatermark());
+        return (int) Math.max(1, Math.min(scaled, remaining));
+    }
+
+    public synchronized int inFlight() {
+        return inFlight;
+    }
+
+    public synchronized int queueDepth() {
+        return queued;
+    }
+
+    public static boolean isRateLimited(final HttpStatusCode status, final HttpHeaders headers) {
+        if (status.value() == HttpStatus.TOO_MANY_REQUESTS.value()) {
+            return true;
+        }
+        return status.value() == HttpStatus.FORBIDDEN.value()
+                && ("0".equals(headers.getFirst(REMAINING_HEADER)) || headers.containsKey(HttpHeaders.RETRY_AFTER));
+    }
+
+    private Mono<ClientResponse> exchange(final ClientRequest request, final ExchangeFunction next, final int attempt) {
+        return withPermit(permit -> next.exchange(permit.authorize(request))
+                        .doOnNext(response -> record(permit, response)))
+                .flatMap(response -> {
+                    if (!isRateLimited(response.statusCode(), response.headers().asHttpHeaders())
+                            || attempt >= settings.maxRetries()) {
+                        return Mono.just(response);
+                    }
+                    throttledResponses.increment();
+                    log.warn("GitHub rate limit hit for {}, queueing retry {}", request.url(), attempt + 1);
+                    return response.releaseBody().then(exchange(request, next, attempt + 1));
+                });
+    }
+
+    /**
+     * Records against the token the response was actually made with, which differs from the permit's when a
+     * hedged duplicate with its own permit answered first.
+     */
+    private void record(final Permit permit, final ClientResponse response) {
+        TokenPool.Credential credential = tokenPool
+                .find(response.request().getHeaders().getFirst(HttpHeaders.AUTHORIZATION))
+                .orElse(permit.credential);
+        record(credential, response.statusCode(), response.headers().asHttpHeaders());
+    }
+
+    private void drain() {
+        List<Waiter> granted = new ArrayList<>();
+        Duration pause = null;
+        synchronized (this) {
+            Instant now = clock.instant();
+            int limit = concurrencyLimit();
+            while (inFlight < limit && queued > 0) {
+                Optional<TokenPool.Credential> credential = tokenPool.select(now);
+                if (credential.isEmpty()) {
+                    break;
+                }
+                Waiter waiter = pollNextWaiter();
+                waiter.permit.credential = credential.get();
+                granted.add(waiter);
+                inFlight++;
+            }
+            Instant availableAt = tokenPool.availableAt(now);
+            if (queued > 0 && !drainScheduled && now.isBefore(availableAt)) {
+                drainScheduled = true;
+                pause = Duration.between(now, availableAt);
+            }
+        }
+        granted.forEach(Waiter::grant);
+        if (pause != null) {
+            log.info("GitHub rate limit budget exhausted, pausing upstream calls for {}", pause);
+            Mono.delay(pause).subscribe(tick -> {
+                synchronized (this) {
+                    drainScheduled = false;
+                }
+                drain();
+            });
+        }
+    }
+
+    private Waiter pollNextWaiter() {
+        Iterator<Map.Entry<String, Deque<Waiter>>> keys = waiters.entrySet().iterator();
+        Map.Entry<String, Deque<Waiter>> next = keys.next();
+        Waiter waiter = next.getValue().poll();
+        keys.remove();
+        if (!next.getValue().isEmpty()) {
+            waiters.put(next.getKey(), next.getValue());
+        }
+        queued--;
+        return waiter;
+    }
+
+    private void releasePermit() {
+        synchronized (this) {
+            inFlight--;
+        }
+        drain();
+    }
+
+    private static Long parseLong(final String value) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException ex) {
+            return null;
+        }
+    }
+
+    public final class Permit {
+
+        private final AtomicBoolean released = new AtomicBoolean();
+        private volatile TokenPool.Credential credential;
+
+        private Permit() {
+        }
+
+        /**
+         * The request with the {@code Authorization} header of the token this permit was granted for.
+         */
+        public ClientRequest authorize(final ClientRequest request) {
+            if (token() == null) {
+                return request;
+            }
+            return ClientRequest.from(request)
+                    .headers(this::authorize)
+                    .build();
+        }
+
+        public void authorize(final HttpHeaders headers) {
+            String token = token();
+            if (token != null) {
+                headers.setBearerAuth(token);
+            }
+        }
+
+        private String token() {
+            return credential == null ? null : credential.token();
+        }
+
+        public void release() {
+            if (released.compareAndSet(false, true)) {
+                releasePermit();
+            }
+        }
+    }
+
+    private final class Waiter {
+
+        private static final int WAITING = 0;
+        private static final int GRANTED = 1;
+        private static final int CANCELLED = 2;
+
+        private final String fairnessKey;
+        private final MonoSink<Permit> sink;
+        private final AtomicInteger state = new AtomicInteger(WAITING);
+        private final Permit permit = new Permit();
+
+        private Waiter(final String fairnessKey, final MonoSink<Permit> sink) {
+            this.fairnessKey = fairnessKey;
+            this.sink = sink;
+        }
+
+        private void grant() {
+            if (state.compareAndSet(WAITING, GRANTED)) {
+                sink.success(permit);
+            } else {
+                permit.release();
+            }
+        }
+
+        private void cancel() {
+            if (state.compareAndSet(WAITING, CANCELLED)) {
+                synchronized (RateLimitScheduler.this) {
+                    Deque<Waiter> queue = waiters.get(fairnessKey);
+                    if (queue != null && queue.remove(this)) {
+                        queued--;
+                        if (queue.isEmpty()) {
+                            waiters.remove(fairnessKey);
+                        }
+                    }
+                }
+            } else {
+                permit.release();
+            }
+        }
+    }
+}
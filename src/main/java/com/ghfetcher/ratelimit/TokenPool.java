@@ -0,0 +1,205 @@
+package com.ghfetcher.ratelimit;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.util.StringUtils;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * The GitHub tokens calls can be made with, each with its own rate limit budget taken from the responses it was
+ * used for. Calls go to the token with the most budget left; a token that is exhausted or rejected for rate
+ * limiting is benched until its reset. Without configured tokens the pool holds a single anonymous credential.
+ */
+@Log4j2
+public class TokenPool {
+
+    static final String ANONYMOUS = "anonymous";
+
+    private final List<Credential> credentials;
+
+    public TokenPool(final List<String> tokens, final MeterRegistry meterRegistry) {
+        Set<String> distinctTokens = new LinkedHashSet<>();
+        tokens.stream().filter(StringUtils::hasText).map(String::trim).forEach(distinctTokens::add);
+        List<Credential> pool = new ArrayList<>();
+        if (distinctTokens.isEmpty()) {
+            pool.add(new Credential(null, ANONYMOUS, meterRegistry));
+        } else {
+            for (String token : distinctTokens) {
+                pool.add(new Credential(token, "token-" + (pool.size() + 1), meterRegistry));
+            }
+        }
+        this.credentials = List.copyOf(pool);
+    }
+
+    int size() {
+        return credentials.size();
+    }
+
+    Credential defaultCredential() {
+        return credentials.get(0);
+    }
+
+    /**
+     * The usable credential with the most budget left, charged for one call; empty while all are benched or
+     * exhausted. Credentials with an unknown budget go first, least used first, so every token gets probed.
+     */
+    synchronized Optional<Credential> select(final Instant now) {
+        Credential best = null;
+        for (Credential credential : credentials) {
+            if (credential.isUsable(now) && (best == null || credential.score(now) > best.score(now))) {
+                best = credential;
+            }
+        }
+        if (best != null) {
+            best.charge(now);
+        }
+        return Optional.ofNullable(best);
+    }
+
+    synchronized void update(final Credential credential, final Long remainingHeader, final Instant resetHeader) {
+        if (remainingHeader != null) {
+            credential.remaining = remainingHeader;
+            credential.chargedWhileUnknown = 0;
+        }
+        if (resetHeader != null) {
+            credential.resetAt = resetHeader;
+        }
+    }
+
+    synchronized void benchUntil(final Credential credential, final Instant until) {
+        if (until.isAfter(credential.benchedUntil)) {
+            log.info("GitHub rate limit of {} exhausted, benching it until {}", credential.label, until);
+            credential.benchedUntil = until;
+        }
+    }
+
+    synchronized Instant resetAt(final Credential credential) {
+        return credential.resetAt;
+    }
+
+    Optional<Credential> find(final String authorization) {
+        if (authorization == null) {
+            return Optional.empty();
+        }
+        return credentials.stream()
+                .filter(credential -> credential.token != null && authorization.equals("Bearer " + credential.token))
+                .findFirst();
+    }
+
+    /**
+     * Budget left across the credentials that are not benched, -1 while any of them has an unknown budget.
+     */
+    synchronized long remainingBudget(final Instant now) {
+        long total = 0;
+        for (Credential credential : credentials) {
+            if (credential.isBenched(now)) {
+                continue;
+            }
+            if (!credential.hasKnownBudget(now)) {
+                return -1;
+            }
+            total += credential.remaining;
+        }
+        return total;
+    }
+
+    /**
+     * Earliest time a credential can be used again; {@code now} or earlier when one is usable.
+     */
+    synchronized Instant availableAt(final Instant now) {
+        Instant earliest = null;
+        for (Credential credential : credentials) {
+            Instant available = credential.availableAt(now);
+            if (earliest == null || available.isBefore(earliest)) {
+                earliest = available;
+            }
+        }
+        return earliest;
+    }
+
+    private synchronized long remainingGauge(final Credential credential) {
+        return credential.hasKnownBudget(Instant.now()) ? credential.remaining : -1;
+    }
+
+    private synchronized boolean isBenchedGauge(final Credential credential) {
+        return credential.isBenched(Instant.now());
+    }
+
+    public final class Credential {
+
+        private final String token;
+        private final String label;
+        private final Counter requests;
+
+        private long remaining = -1;
+        private Instant resetAt = Instant.EPOCH;
+        private Instant benchedUntil = Instant.EPOCH;
+        private long chargedWhileUnknown;
+
+        private Credential(final String token, final String label, final MeterRegistry meterRegistry) {
+            this.token = token;
+            this.label = label;
+            this.requests = Counter.builder("github.ratelimit.token.requests")
+                    .description("Upstream calls made with the token")
+                    .tag("token", label)
+                    .register(meterRegistry);
+            Gauge.builder("github.ratelimit.token.remaining", this, TokenPool.this::remainingGauge)
+                    .description("Requests left in the token's current rate limit window, -1 when unknown")
+                    .tag("token", label)
+                    .register(meterRegistry);
+            Gauge.builder("github.ratelimit.token.benched", this, credential -> isBenchedGauge(credential) ? 1 : 0)
+                    .description("Whether the token is exhausted or rate limited and not used until its reset")
+                    .tag("token", label)
+                    .register(meterRegistry);
+        }
+
+        public String token() {
+            return token;
+        }
+
+        public String label() {
+            return label;
+        }
+
+        private void charge(final Instant now) {
+            requests.increment();
+            if (hasKnownBudget(now)) {
+                remaining = Math.max(0, remaining - 1);
+            } else {
+                chargedWhileUnknown++;
+            }
+        }
+
+        private long score(final Instant now) {
+            return hasKnownBudget(now) ? remaining : Long.MAX_VALUE - chargedWhileUnknown;
+        }
+
+        private boolean hasKnownBudget(final Instant now) {
+            return remaining >= 0 && now.isBefore(resetAt);
+        }
+
+        private boolean isBenched(final Instant now) {
+            return now.isBefore(benchedUntil);
+        }
+
+        private boolean isUsable(final Instant now) {
+            return !isBenched(now) && !(hasKnownBudget(now) && remaining == 0);
+        }
+
+        private Instant availableAt(final Instant now) {
+            Instant available = benchedUntil;
+            if (hasKnownBudget(now) && remaining == 0 && resetAt.isAfter(available)) {
+                available = resetAt;
+            }
+            return available;
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.ghfetcher.resilience;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.log4j.Log4j2;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Opens after {@code failureThreshold} consecutive failed upstream calls and rejects calls for {@code openDuration}.
+ * Then a single probe call is let through (half-open): its success closes the circuit, its failure opens it again.
+ * Only the end of the probe itself lets another probe through, not that of a call permitted before the circuit opened.
+ */
+@Log4j2
+public class CircuitBreaker {
+
+    enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    public enum Admission {
+        REJECTED, PERMITTED, PROBE
+    }
+
+    private final int failureThreshold;
+    private final Duration openDuration;
+    private final Clock clock;
+
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private Instant openUntil = Instant.EPOCH;
+    private boolean probeInFlight;
+
+    public CircuitBreaker(final int failureThreshold, final Duration openDuration, final MeterRegistry meterRegistry) {
+        this(failureThreshold, openDuration, meterRegistry, Clock.systemUTC());
+    }
+
+    CircuitBreaker(final int failureThreshold, final Duration openDuration, final MeterRegistry meterRegistry,
+                   final Clock clock) {
+        this.failureThreshold = failureThreshold;
+        this.openDuration = openDuration;
+        this.clock = clock;
+        Gauge.builder("github.resilience.circuit.state", this, breaker -> breaker.state().ordinal())
+                .description("Circuit state of upstream calls: 0 closed, 1 open, 2 half-open")
+                .register(meterRegistry);
+    }
+
+    /**
+     * @return whether the call may go upstream, and whether as the probe; every call not rejected must end in
+     * {@link #onSuccess()}, {@link #onFailure()} or {@link #onAbandoned(Admission)}
+     */
+    public synchronized Admission tryAcquire() {
+        if (state == State.OPEN && !clock.instant().isBefore(openUntil)) {
+            state = State.HALF_OPEN;
+        }
+        return switch (state) {
+            case CLOSED -> Admission.PERMITTED;
+            case OPEN -> Admission.REJECTED;
+            case HALF_OPEN -> {
+                if (probeInFlight) {
+                    yield Admission.REJECTED;
+                }
+                probeInFlight = true;
+                yield Admission.PROBE;
+            }
+        };
+    }
+
+    public synchronized void onSuccess() {
+        if (state != State.CLOSED) {
+            log.info("Upstream calls succeed again, closing the circuit");
+        }
+        state = State.CLOSED;
+        consecutiveFailures = 0;
+        probeInFlight = false;
+    }
+
+    public synchronized void onFailure() {
+        consecutiveFailures++;
+        if (state == State.HALF_OPEN || (state == State.CLOSED && consecutiveFailures >= failureThreshold)) {
+            log.warn("{} consecutive upstream calls failed, opening the circuit for {}", consecutiveFailures, openDuration);
+            state = State.OPEN;
+            openUntil = clock.instant().plus(openDuration);
+        }
+        probeInFlight = false;
+    }
+
+    /**
+     * The call was cancelled before its outcome was known.
+     */
+    public synchronized void onAbandoned(final Admission admission) {
+        if (admission == Admission.PROBE) {
+            probeInFlight = false;
+        }
+    }
+
+    /**
+     * Time until the open circuit lets a probe call through, zero when it is not open.
+     */
+    public synchronized Duration retryAfter() {
+        if (state != State.OPEN) {
+            return Duration.ZERO;
+        }
+        Duration remaining = Duration.between(clock.instant(), openUntil);
+        return remaining.isNegative() ? Duration.ZERO : remaining;
+    }
+
+    synchronized State state() {
+        return state;
+    }
+}
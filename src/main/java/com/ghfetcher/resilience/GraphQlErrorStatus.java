@@ -0,0 +1,107 @@
+package com.ghfetcher.resilience;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ghfetcher.ratelimit.RateLimitScheduler;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.reactive.function.BodyExtractors;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+import org.springframework.web.reactive.function.client.ExchangeFunction;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+
+/**
+ * GitHub answers GraphQL queries with {@code 200 OK} even when they failed, and reports the failure in the
+ * {@code errors} array. This filter gives such responses the status they stand for, so the
+ * {@link RateLimitScheduler} and {@link UpstreamRetries} treat them like failed REST calls: a {@code RATE_LIMITED}
+ * error becomes {@code 429 Too Many Requests} and is queued for retry, any other error except {@code NOT_FOUND}
+ * becomes {@code 502 Bad Gateway} and counts against the circuit breaker. {@code NOT_FOUND} errors are left to the
+ * client, which maps them to an unknown user.
+ * <p>
+ * Registered inside the {@link RateLimitScheduler}; only the {@code errors} member of the buffered body is parsed.
+ */
+@Log4j2
+public class GraphQlErrorStatus implements ExchangeFilterFunction {
+
+    private static final String NOT_FOUND = "NOT_FOUND";
+    private static final String RATE_LIMITED = "RATE_LIMITED";
+
+    private final ObjectMapper objectMapper;
+
+    public GraphQlErrorStatus(final ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    public Mono<ClientResponse> filter(final ClientRequest request, final ExchangeFunction next) {
+        if (request.method() != HttpMethod.POST || !request.url().getPath().endsWith("/graphql")) {
+            return next.exchange(request);
+        }
+        return next.exchange(request)
+                .flatMap(response -> response.statusCode() != HttpStatus.OK
+                        ? Mono.just(response)
+                        : DataBufferUtils.join(response.body(BodyExtractors.toDataBuffers()))
+                                .map(buffer -> {
+                                    byte[] bytes = new byte[buffer.readableByteCount()];
+                                    buffer.read(bytes);
+                                    DataBufferUtils.release(buffer);
+                                    return bytes;
+                                })
+                                .defaultIfEmpty(new byte[0])
+                                .map(bytes -> withErrorStatus(response, bytes)));
+    }
+
+    private ClientResponse withErrorStatus(final ClientResponse response, final byte[] body) {
+        HttpStatus status = errorStatus(body);
+        if (status != HttpStatus.OK) {
+            log.warn("GitHub GraphQL query to {} failed, treating it as {}", response.request().getURI(), status);
+        }
+        return response.mutate()
+                .statusCode(status)
+                .body(Flux.defer(() -> Flux.just(DefaultDataBufferFactory.sharedInstance.wrap(body))))
+                .build();
+    }
+
+    private HttpStatus errorStatus(final byte[] body) {
+        try (JsonParser parser = objectMapper.getFactory().createParser(body)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return HttpStatus.OK;
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                parser.nextToken();
+                if ("errors".equals(field)) {
+                    return errorStatus(objectMapper.<JsonNode>readTree(parser));
+                }
+                parser.skipChildren();
+            }
+            return HttpStatus.OK;
+        } catch (IOException ex) {
+            return HttpStatus.OK;
+        }
+    }
+
+    private static HttpStatus errorStatus(final JsonNode errors) {
+        HttpStatus status = HttpStatus.OK;
+        for (JsonNode error : errors) {
+            String type = error.path("type").asText("");
+            if (RATE_LIMITED.equals(type)) {
+                return HttpStatus.TOO_MANY_REQUESTS;
+            }
+            if (!NOT_FOUND.equals(type)) {
+                status = HttpStatus.BAD_GATEWAY;
+            }
+        }
+        return status;
+    }
+}
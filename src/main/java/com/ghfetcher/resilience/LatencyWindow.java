@@ -0,0 +1,44 @@
+package com.ghfetcher.resilience;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Optional;
+
+/**
+ * The latest upstream call latencies of one endpoint, kept in a ring buffer.
+ */
+class LatencyWindow {
+
+    static final int MIN_SAMPLES = 20;
+
+    private final long[] samples;
+    private int count;
+    private int next;
+
+    LatencyWindow(final int size) {
+        this.samples = new long[size];
+    }
+
+    synchronized void record(final long nanos) {
+        samples[next] = nanos;
+        next = (next + 1) % samples.length;
+        count = Math.min(count + 1, samples.length);
+    }
+
+    /**
+     * @return the latency below which {@code quantile} of the recorded calls completed, empty until
+     * {@value #MIN_SAMPLES} calls have been recorded
+     */
+    Optional<Duration> quantile(final double quantile) {
+        long[] sorted;
+        synchronized (this) {
+            if (count < MIN_SAMPLES) {
+                return Optional.empty();
+            }
+            sorted = Arrays.copyOf(samples, count);
+        }
+        Arrays.sort(sorted);
+        int index = Math.min(sorted.length - 1, Math.max(0, (int) Math.ceil(quantile * sorted.length) - 1));
+        return Optional.of(Duration.ofNanos(sorted[index]));
+    }
+}
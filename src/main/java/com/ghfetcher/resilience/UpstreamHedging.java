@@ -0,0 +1,141 @@
+package com.ghfetcher.resilience;
+
+import com.ghfetcher.config.GithubProperties;
+import com.ghfetcher.metrics.UpstreamCallMetrics;
+import com.ghfetcher.ratelimit.RateLimitScheduler;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+import org.springframework.web.reactive.function.client.ExchangeFunction;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Bounds every upstream call by {@code callTimeout} and, for GETs still unanswered after the endpoint's
+ * {@code hedgeQuantile} latency (p95 by default), sends a duplicate call and keeps whichever successful (2xx or 304)
+ * response arrives first; the other call is cancelled. Once a hedge is out, the call fails only if both attempts
+ * fail, with the outcome of the one failing last, so a primary call that times out or answers with a 5xx doesn't take
+ * a hedge that might still succeed down with it. A hedge takes its own permit (and with it possibly another token)
+ * from the {@link RateLimitScheduler} and is only sent while the budget is above the low watermark and no calls are
+ * queueing.
+ * <p>
+ * Registered inside the {@link RateLimitScheduler}, so latencies and timeouts cover the call itself, not the wait
+ * for a permit.
+ */
+public class UpstreamHedging implements ExchangeFilterFunction {
+
+    private static final int WINDOW_SIZE = 256;
+
+    private final GithubProperties.Resilience settings;
+    private final RateLimitScheduler rateLimitScheduler;
+    private final Map<String, LatencyWindow> latencies = new ConcurrentHashMap<>();
+    private final Counter hedgesIssued;
+    private final Counter hedgesWon;
+
+    public UpstreamHedging(final GithubProperties.Resilience settings, final RateLimitScheduler rateLimitScheduler,
+                           final MeterRegistry meterRegistry) {
+        this.settings = settings;
+        this.rateLimitScheduler = rateLimitScheduler;
+        this.hedgesIssued = hedgeCounter(meterRegistry, "issued");
+        this.hedgesWon = hedgeCounter(meterRegistry, "won");
+    }
+
+    @Override
+    public Mono<ClientResponse> filter(final ClientRequest request, final ExchangeFunction next) {
+        LatencyWindow window = latencies.computeIfAbsent(UpstreamCallMetrics.endpoint(request),
+                endpoint -> new LatencyWindow(WINDOW_SIZE));
+        Optional<Duration> hedgeDelay = hedgeDelay(request, window);
+        if (hedgeDelay.isEmpty()) {
+            return timedCall(request, next, window);
+        }
+        Sinks.Empty<Long> primaryFailed = Sinks.empty();
+        Mono<Attempt> primary = attempt(timedCall(request, next, window))
+                .doOnNext(attempt -> {
+                    if (!attempt.succeeded()) {
+                        primaryFailed.tryEmitEmpty();
+                    }
+                });
+        // a primary call failing before the hedge delay ends the wait, so its outcome isn't held back
+        Mono<Attempt> hedge = Mono.firstWithSignal(Mono.delay(hedgeDelay.get()), primaryFailed.asMono())
+                .filter(tick -> rateLimitScheduler.hasSpareBudget() && rateLimitScheduler.queueDepth() == 0)
+                .flatMap(tick -> rateLimitScheduler.withPermit(permit -> {
+                    hedgesIssued.increment();
+                    return timedCall(permit.authorize(request), next, window);
+                }).as(UpstreamHedging::attempt).doOnNext(attempt -> {
+                    if (attempt.succeeded()) {
+                        hedgesWon.increment();
+                    }
+                }));
+        return Flux.merge(primary, hedge)
+                .takeUntil(Attempt::succeeded)
+                .reduce((failed, later) -> {
+                    failed.release();
+                    return later;
+                })
+                .flatMap(Attempt::outcome)
+                .doOnDiscard(Attempt.class, Attempt::release);
+    }
+
+    private static Mono<Attempt> attempt(final Mono<ClientResponse> call) {
+        return call.map(response -> new Attempt(response, null))
+                .onErrorResume(error -> Mono.just(new Attempt(null, error)));
+    }
+
+    private Mono<ClientResponse> timedCall(final ClientRequest request, final ExchangeFunction next,
+                                           final LatencyWindow window) {
+        return Mono.defer(() -> {
+            long startNanos = System.nanoTime();
+            return next.exchange(request)
+                    .timeout(settings.callTimeout())
+                    .doOnNext(response -> window.record(System.nanoTime() - startNanos));
+        });
+    }
+
+    private Optional<Duration> hedgeDelay(final ClientRequest request, final LatencyWindow window) {
+        if (request.method() != HttpMethod.GET || settings.hedgeQuantile() <= 0) {
+            return Optional.empty();
+        }
+        return window.quantile(settings.hedgeQuantile())
+                .map(latency -> latency.compareTo(settings.minHedgeDelay()) < 0 ? settings.minHedgeDelay() : latency)
+                .filter(delay -> delay.compareTo(settings.callTimeout()) < 0);
+    }
+
+    /**
+     * Outcome of one of the calls: a response, or the error the call failed with.
+     */
+    private record Attempt(ClientResponse response, Throwable error) {
+
+        boolean succeeded() {
+            return response != null
+                    && (response.statusCode().is2xxSuccessful()
+                    || response.statusCode().value() == HttpStatus.NOT_MODIFIED.value());
+        }
+
+        Mono<ClientResponse> outcome() {
+            return response != null ? Mono.just(response) : Mono.error(error);
+        }
+
+        void release() {
+            if (response != null) {
+                response.releaseBody().subscribe();
+            }
+        }
+    }
+
+    private static Counter hedgeCounter(final MeterRegistry meterRegistry, final String result) {
+        return Counter.builder("github.resilience.hedges")
+                .description("Duplicate GETs sent after the endpoint's hedge latency and those answering first")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+}
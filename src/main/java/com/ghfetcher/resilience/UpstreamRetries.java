@@ -0,0 +1,135 @@
+package com.ghfetcher.resilience;
+
+import com.ghfetcher.config.GithubProperties;
+import com.ghfetcher.error.UpstreamUnavailableException;
+import com.ghfetcher.ratelimit.RateLimitScheduler;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.http.HttpMethod;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+import org.springframework.web.reactive.function.client.ExchangeFunction;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Retries GET calls that fail with a 5xx status, a timeout or a connection error, after a random delay of up to
+ * {@code initialBackoff} doubled per attempt ("full jitter"), and feeds every outcome to the {@link CircuitBreaker},
+ * which fails calls fast with {@link UpstreamUnavailableException} while GitHub is degraded.
+ * <p>
+ * Registered outside the {@link RateLimitScheduler}, so every retry waits for a permit and is charged to the rate
+ * limit budget like any other call; once the budget drops below the low watermark failures are no longer retried.
+ */
+@Log4j2
+public class UpstreamRetries implements ExchangeFilterFunction {
+
+    private final GithubProperties.Resilience settings;
+    private final RateLimitScheduler rateLimitScheduler;
+    private final CircuitBreaker circuitBreaker;
+    private final Counter retriesIssued;
+    private final Counter retriesSkipped;
+    private final Counter rejected;
+
+    public UpstreamRetries(final GithubProperties.Resilience settings, final RateLimitScheduler rateLimitScheduler,
+                           final CircuitBreaker circuitBreaker, final MeterRegistry meterRegistry) {
+        this.settings = settings;
+        this.rateLimitScheduler = rateLimitScheduler;
+        this.circuitBreaker = circuitBreaker;
+        this.retriesIssued = retryCounter(meterRegistry, "issued");
+        this.retriesSkipped = retryCounter(meterRegistry, "skipped");
+        this.rejected = Counter.builder("github.resilience.circuit.rejected")
+                .description("Upstream calls failed fast because the circuit was open")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public Mono<ClientResponse> filter(final ClientRequest request, final ExchangeFunction next) {
+        return attempt(request, next, 0);
+    }
+
+    private Mono<ClientResponse> attempt(final ClientRequest request, final ExchangeFunction next, final int attempt) {
+        return Mono.defer(() -> {
+            CircuitBreaker.Admission admission = circuitBreaker.tryAcquire();
+            if (admission == CircuitBreaker.Admission.REJECTED) {
+                rejected.increment();
+                return Mono.error(new UpstreamUnavailableException("GitHub is unavailable, try again later",
+                        circuitBreaker.retryAfter()));
+            }
+            return next.exchange(request)
+                    .doOnCancel(() -> circuitBreaker.onAbandoned(admission))
+                    .materialize()
+                    .flatMap(signal -> {
+                        if (signal.hasValue()) {
+                            return onResponse(request, next, attempt, signal.get());
+                        }
+                        if (signal.hasError()) {
+                            return onError(request, next, attempt, admission, signal.getThrowable());
+                        }
+                        circuitBreaker.onAbandoned(admission);
+                        return Mono.empty();
+                    });
+        });
+    }
+
+    private Mono<ClientResponse> onResponse(final ClientRequest request, final ExchangeFunction next,
+                                            final int attempt, final ClientResponse response) {
+        if (!response.statusCode().is5xxServerError()) {
+            circuitBreaker.onSuccess();
+            return Mono.just(response);
+        }
+        circuitBreaker.onFailure();
+        if (!shouldRetry(request, attempt)) {
+            return Mono.just(response);
+        }
+        log.warn("GitHub answered {} for {}, retry {}", response.statusCode().value(), request.url(), attempt + 1);
+        return response.releaseBody().then(retry(request, next, attempt));
+    }
+
+    private Mono<ClientResponse> onError(final ClientRequest request, final ExchangeFunction next, final int attempt,
+                                         final CircuitBreaker.Admission admission, final Throwable error) {
+        if (!(error instanceof TimeoutException || error instanceof WebClientRequestException)) {
+            circuitBreaker.onAbandoned(admission);
+            return Mono.error(error);
+        }
+        circuitBreaker.onFailure();
+        if (!shouldRetry(request, attempt)) {
+            return Mono.error(error);
+        }
+        log.warn("Call to {} failed with {}, retry {}", request.url(), error.toString(), attempt + 1);
+        return retry(request, next, attempt);
+    }
+
+    private boolean shouldRetry(final ClientRequest request, final int attempt) {
+        if (request.method() != HttpMethod.GET || attempt >= settings.maxRetries()) {
+            return false;
+        }
+        if (!rateLimitScheduler.hasSpareBudget()) {
+            retriesSkipped.increment();
+            return false;
+        }
+        return true;
+    }
+
+    private Mono<ClientResponse> retry(final ClientRequest request, final ExchangeFunction next, final int attempt) {
+        retriesIssued.increment();
+        return Mono.delay(backoff(attempt)).then(attempt(request, next, attempt + 1));
+    }
+
+    private Duration backoff(final int attempt) {
+        long cap = Math.min(settings.maxBackoff().toMillis(), settings.initialBackoff().toMillis() << Math.min(attempt, 20));
+        return Duration.ofMillis(ThreadLocalRandom.current().nextLong(cap + 1));
+    }
+
+    private static Counter retryCounter(final MeterRegistry meterRegistry, final String result) {
+        return Counter.builder("github.resilience.retries")
+                .description("Retries of failed upstream calls, skipped while the rate limit budget is low")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,21 @@
+package com.ghfetcher.service;
+
+import com.ghfetcher.dto.BranchWithCommitsDto;
+import com.ghfetcher.dto.RepositoryDto;
+
+import java.util.List;
+
+/**
+ * A {@link GithubClient} whose calls can also be made as plain blocking code on the calling thread. With such a client
+ * {@link GithubService} fetches a whole user on virtual threads, fanning out the branch calls in a
+ * {@link StructuredFanOut} instead of the reactive pipeline.
+ */
+interface BlockingGithubClient extends GithubClient {
+
+    /**
+     * @throws com.ghfetcher.error.UserNotFoundException when GitHub doesn't know the user
+     */
+    List<RepositoryDto> fetchUserRepos(final String userName, final String fairnessKey);
+
+    List<BranchWithCommitsDto> fetchBranches(final String userName, final String repoName, final String fairnessKey);
+}
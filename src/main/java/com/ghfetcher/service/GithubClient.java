@@ -8,5 +8,18 @@ interface GithubClient {
 
     Flux<BranchWithCommitsDto> makeRequestForBranches(final String userName, final String repoName);
 
+    /**
+     * Same branches, but a page is only requested once the previous one has been consumed and more branches are
+     * demanded, for callers that only take the first few.
+     */
+    Flux<BranchWithCommitsDto> makeRequestForBranchesPageByPage(final String userName, final String repoName);
+
     Flux<RepositoryDto> makeRequestForUserRepos(final String userName);
+
+    /**
+     * Same listing, but a page is only requested once the previous one has been consumed and more repositories are
+     * demanded, so a caller that stops early does not pay for the remaining pages. Without {@code withBranches} a
+     * client that resolves branches together with the repositories leaves them out.
+     */
+    Flux<RepositoryDto> makeRequestForUserReposPageByPage(final String userName, final boolean withBranches);
 }
\ No newline at end of file
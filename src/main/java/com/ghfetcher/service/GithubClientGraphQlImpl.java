@@ -0,0 +1,251 @@
+package com.ghfetcher.service;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.ghfetcher.config.GithubProperties;
+import com.ghfetcher.dto.BranchWithCommitsDto;
+import com.ghfetcher.dto.CommitDto;
+import com.ghfetcher.dto.RepositoryDto;
+import com.ghfetcher.error.UserNotFoundException;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Resolves repositories together with their branch heads through the GitHub GraphQL API, so a user costs a few
+ * cursor-paginated queries instead of one REST call per repository. Requires {@code service.github.token}.
+ * <p>
+ * A missing owner is an unknown user only when GitHub reports it as {@code NOT_FOUND} (or reports no error at all);
+ * rate limits and other query errors are turned into failed calls by
+ * {@link com.ghfetcher.resilience.GraphQlErrorStatus} before they get here.
+ */
+@RequiredArgsConstructor
+@Service
+@ConditionalOnProperty(prefix = "service.github", name = "client", havingValue = "graphql")
+class GithubClientGraphQlImpl implements GithubClient {
+
+    private static final int PAGE_SIZE = 100;
+    private static final String NOT_FOUND = "NOT_FOUND";
+
+    private static final String REPOSITORIES_QUERY = """
+            query($login: String!, $cursor: String, $pageSize: Int!) {
+              repositoryOwner(login: $login) {
+                repositories(first: $pageSize, after: $cursor, isFork: false, ownerAffiliations: OWNER,
+                             orderBy: {field: NAME, direction: ASC}) {
+                  pageInfo { hasNextPage endCursor }
+                  nodes {
+                    name
+                    isFork
+                    refs(refPrefix: "refs/heads/", first: $pageSize) {
+                      pageInfo { hasNextPage endCursor }
+                      nodes { name target { oid } }
+                    }
+                  }
+                }
+              }
+            }""";
+
+    private static final String REPOSITORY_NAMES_QUERY = """
+            query($login: String!, $cursor: String, $pageSize: Int!) {
+              repositoryOwner(login: $login) {
+                repositories(first: $pageSize, after: $cursor, isFork: false, ownerAffiliations: OWNER,
+                             orderBy: {field: NAME, direction: ASC}) {
+                  pageInfo { hasNextPage endCursor }
+                  nodes { name isFork }
+                }
+              }
+            }""";
+
+    private static final String REFS_QUERY = """
+            query($owner: String!, $name: String!, $cursor: String, $pageSize: Int!) {
+              repository(owner: $owner, name: $name) {
+                refs(refPrefix: "refs/heads/", first: $pageSize, after: $cursor) {
+                  pageInfo { hasNextPage endCursor }
+                  nodes { name target { oid } }
+                }
+              }
+            }""";
+
+    private final WebClient webClient;
+    private final GithubProperties githubProperties;
+
+    @Override
+    public Flux<RepositoryDto> makeRequestForUserRepos(final String userName) {
+        return fetchRepositoriesPage(REPOSITORIES_QUERY, userName, null)
+                .expand(page -> page.pageInfo().hasNextPage()
+                        ? fetchRepositoriesPage(REPOSITORIES_QUERY, userName, page.pageInfo().endCursor())
+                        : Mono.empty())
+                .flatMapIterable(RepositoryConnection::nodes)
+                .flatMapSequential(repository -> toRepositoryDto(userName, repository),
+                        githubProperties.prefetchPages());
+    }
+
+    /**
+     * Walks the cursors one at a time, and without {@code withBranches} leaves the refs out of the query.
+     */
+    @Override
+    public Flux<RepositoryDto> makeRequestForUserReposPageByPage(final String userName, final boolean withBranches) {
+        String query = withBranches ? REPOSITORIES_QUERY : REPOSITORY_NAMES_QUERY;
+        return pageByPage(cursor -> fetchRepositoriesPage(query, userName, cursor), null)
+                .concatMap(repository -> toRepositoryDto(userName, repository), 0);
+    }
+
+    @Override
+    public Flux<BranchWithCommitsDto> makeRequestForBranches(final String userName, final String repoName) {
+        return fetchRefsPages(userName, repoName, null);
+    }
+
+    @Override
+    public Flux<BranchWithCommitsDto> makeRequestForBranchesPageByPage(final String userName, final String repoName) {
+        return pageByPage(cursor -> fetchRefsPage(userName, repoName, cursor), null)
+                .map(GithubClientGraphQlImpl::toBranchDto);
+    }
+
+    /**
+     * Requests the page after {@code cursor}, and each following page only once the nodes of the previous one have
+     * been taken.
+     */
+    private static <T> Flux<T> pageByPage(final Function<String, Mono<? extends Connection<T>>> fetchPage,
+                                          final String cursor) {
+        return fetchPage.apply(cursor).flatMapMany(page -> {
+            Flux<T> nodes = Flux.fromIterable(page.nodes());
+            if (!page.pageInfo().hasNextPage()) {
+                return nodes;
+            }
+            return nodes.concatWith(Flux.defer(() -> pageByPage(fetchPage, page.pageInfo().endCursor())));
+        });
+    }
+
+    private Mono<RepositoryDto> toRepositoryDto(final String userName, final RepositoryNode repository) {
+        if (repository.refs() == null) {
+            return Mono.just(new RepositoryDto(repository.name(), repository.isFork()));
+        }
+        Flux<BranchWithCommitsDto> firstRefs = Flux.fromIterable(repository.refs().nodes())
+                .map(GithubClientGraphQlImpl::toBranchDto);
+        PageInfo refsPage = repository.refs().pageInfo();
+        Flux<BranchWithCommitsDto> remainingRefs = refsPage.hasNextPage()
+                ? fetchRefsPages(userName, repository.name(), refsPage.endCursor())
+                : Flux.empty();
+        return firstRefs.concatWith(remainingRefs)
+                .collectList()
+                .map(branches -> new RepositoryDto(repository.name(), repository.isFork(), branches));
+    }
+
+    private Flux<BranchWithCommitsDto> fetchRefsPages(final String userName, final String repoName,
+                                                      final String cursor) {
+        return fetchRefsPage(userName, repoName, cursor)
+                .expand(page -> page.pageInfo().hasNextPage()
+                        ? fetchRefsPage(userName, repoName, page.pageInfo().endCursor())
+                        : Mono.empty())
+                .flatMapIterable(RefConnection::nodes)
+                .map(GithubClientGraphQlImpl::toBranchDto);
+    }
+
+    private Mono<RepositoryConnection> fetchRepositoriesPage(final String query, final String userName,
+                                                             final String cursor) {
+        Map<String, Object> variables = new HashMap<>();
+        variables.put("login", userName);
+        variables.put("cursor", cursor);
+        variables.put("pageSize", PAGE_SIZE);
+        return query(query, variables, RepositoriesResponse.class)
+                .flatMap(response -> {
+                    if (response.data() != null && response.data().repositoryOwner() != null) {
+                        return Mono.just(response.data().repositoryOwner().repositories());
+                    }
+                    return notFoundOrFailed(response.errors(), new UserNotFoundException("User not found"));
+                });
+    }
+
+    private Mono<RefConnection> fetchRefsPage(final String userName, final String repoName, final String cursor) {
+        Map<String, Object> variables = new HashMap<>();
+        variables.put("owner", userName);
+        variables.put("name", repoName);
+        variables.put("cursor", cursor);
+        variables.put("pageSize", PAGE_SIZE);
+        return query(REFS_QUERY, variables, RefsResponse.class)
+                .flatMap(response -> {
+                    if (response.data() != null && response.data().repository() != null) {
+                        return Mono.just(response.data().repository().refs());
+                    }
+                    return notFoundOrFailed(response.errors(), null);
+                });
+    }
+
+    /**
+     * Fails with {@code notFound}, or completes empty when it is {@code null}, if every error is {@code NOT_FOUND};
+     * fails with the errors' messages otherwise.
+     */
+    private static <T> Mono<T> notFoundOrFailed(final List<GraphQlError> errors, final RuntimeException notFound) {
+        if (errors == null || errors.stream().allMatch(error -> NOT_FOUND.equals(error.type()))) {
+            return notFound == null ? Mono.empty() : Mono.error(notFound);
+        }
+        return Mono.error(new IllegalStateException("GitHub GraphQL query failed: " + errors.stream()
+                .map(error -> error.type() + " " + error.message())
+                .toList()));
+    }
+
+    private <T> Mono<T> query(final String query, final Map<String, Object> variables, final Class<T> responseType) {
+        return webClient.post()
+                .uri("/graphql")
+                .bodyValue(Map.of("query", query, "variables", variables))
+                .retrieve()
+                .bodyToMono(responseType);
+    }
+
+    private static BranchWithCommitsDto toBranchDto(final RefNode ref) {
+        return new BranchWithCommitsDto(ref.name(), new CommitDto(ref.target().oid()));
+    }
+
+    record GraphQlError(String type, String message) {
+    }
+
+    record RepositoriesResponse(RepositoriesData data, List<GraphQlError> errors) {
+    }
+
+    record RepositoriesData(RepositoryOwner repositoryOwner) {
+    }
+
+    record RepositoryOwner(RepositoryConnection repositories) {
+    }
+
+    interface Connection<T> {
+
+        PageInfo pageInfo();
+
+        List<T> nodes();
+    }
+
+    record RepositoryConnection(PageInfo pageInfo, List<RepositoryNode> nodes) implements Connection<RepositoryNode> {
+    }
+
+    record RepositoryNode(String name, @JsonProperty("isFork") boolean isFork, RefConnection refs) {
+    }
+
+    record RefsResponse(RefsData data, List<GraphQlError> errors) {
+    }
+
+    record RefsData(RefsRepository repository) {
+    }
+
+    record RefsRepository(RefConnection refs) {
+    }
+
+    record RefConnection(PageInfo pageInfo, List<RefNode> nodes) implements Connection<RefNode> {
+    }
+
+    record RefNode(String name, RefTarget target) {
+    }
+
+    record RefTarget(String oid) {
+    }
+
+    record PageInfo(boolean hasNextPage, String endCursor) {
+    }
+}
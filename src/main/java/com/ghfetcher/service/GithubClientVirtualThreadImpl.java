@@ -0,0 +1,212 @@
+package com.ghfetcher.service;
+
+import com.ghfetcher.admission.AdmissionControl;
+import com.ghfetcher.config.GithubProperties;
+import com.ghfetcher.dto.BranchWithCommitsDto;
+import com.ghfetcher.dto.RepositoryDto;
+import com.ghfetcher.error.UserNotFoundException;
+import com.ghfetcher.ratelimit.RateLimitScheduler;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.DefaultResponseErrorHandler;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.ResponseErrorHandler;
+import org.springframework.web.client.RestClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.OptionalInt;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+
+/**
+ * Blocking REST client on virtual threads: every call is plain sequential code, made with a {@link RestClient} on the
+ * JDK {@link java.net.http.HttpClient}. {@link GithubService} fetches a user through the blocking calls on virtual
+ * threads of its own and fans out the branch calls of the repositories in a {@link StructuredFanOut}, skipping
+ * repositories not pushed since and sharing concurrent branch calls; the reactive calls, used for projected
+ * requests, run each call on a virtual thread of the client. Pages listed in a {@code last} link are fetched in one
+ * {@link StructuredFanOut}.
+ * <p>
+ * The WebClient filters don't apply here, so upstream permits, tokens and rate limit headers are handled per call
+ * and rate-limited responses are retried once the token's budget allows; conditional requests, retries of failed
+ * calls, hedging and the circuit breaker are only available with the reactive client.
+ */
+@Log4j2
+@Service
+@ConditionalOnProperty(prefix = "service.github", name = "client", havingValue = "virtual-threads")
+class GithubClientVirtualThreadImpl implements BlockingGithubClient {
+
+    private static final String REPOSITORIES_PATH = "/users/{userName}/repos";
+    private static final String BRANCHES_PATH = "/repos/{userName}/{repoName}/branches";
+
+    private final RestClient restClient;
+    private final Scheduler virtualThreads;
+    private final RateLimitScheduler rateLimitScheduler;
+    private final AdmissionControl admissionControl;
+    private final GithubProperties githubProperties;
+    private final ResponseErrorHandler errorHandler = new DefaultResponseErrorHandler();
+
+    GithubClientVirtualThreadImpl(final RestClient githubRestClient, final ExecutorService githubVirtualThreads,
+                                  final RateLimitScheduler rateLimitScheduler, final AdmissionControl admissionControl,
+                                  final GithubProperties githubProperties) {
+        this.restClient = githubRestClient;
+        this.virtualThreads = Schedulers.fromExecutorService(githubVirtualThreads, "github-virtual-threads");
+        this.rateLimitScheduler = rateLimitScheduler;
+        this.admissionControl = admissionControl;
+        this.githubProperties = githubProperties;
+    }
+
+    @Override
+    public List<RepositoryDto> fetchUserRepos(final String userName, final String fairnessKey) {
+        return userRepos(() -> fetchAllPages(REPOSITORIES_PATH, RepositoryDto[].class, fairnessKey, userName));
+    }
+
+    @Override
+    public List<BranchWithCommitsDto> fetchBranches(final String userName, final String repoName,
+                                                    final String fairnessKey) {
+        return fetchAllPages(BRANCHES_PATH, BranchWithCommitsDto[].class, fairnessKey, userName, repoName);
+    }
+
+    @Override
+    public Flux<RepositoryDto> makeRequestForUserRepos(final String userName) {
+        return blocking(fairnessKey -> fetchUserRepos(userName, fairnessKey));
+    }
+
+    @Override
+    public Flux<RepositoryDto> makeRequestForUserReposPageByPage(final String userName, final boolean withBranches) {
+        return pageByPage(REPOSITORIES_PATH, RepositoryDto[].class, userName)
+                .onErrorMap(HttpClientErrorException.NotFound.class,
+                        ex -> new UserNotFoundException("User not found"));
+    }
+
+    @Override
+    public Flux<BranchWithCommitsDto> makeRequestForBranches(final String userName, final String repoName) {
+        return blocking(fairnessKey -> fetchBranches(userName, repoName, fairnessKey));
+    }
+
+    @Override
+    public Flux<BranchWithCommitsDto> makeRequestForBranchesPageByPage(final String userName, final String repoName) {
+        return pageByPage(BRANCHES_PATH, BranchWithCommitsDto[].class, userName, repoName);
+    }
+
+    /**
+     * Runs {@code call} on a virtual thread with the fairness key of the subscriber's context.
+     */
+    private <T> Flux<T> blocking(final Function<String, List<T>> call) {
+        return Flux.deferContextual(context -> {
+            String fairnessKey = context.getOrDefault(RateLimitScheduler.FAIRNESS_KEY, "");
+            return Mono.fromCallable(() -> call.apply(fairnessKey))
+                    .subscribeOn(virtualThreads)
+                    .flatMapIterable(Function.identity());
+        });
+    }
+
+    /**
+     * Follows {@code next} links, each page on a virtual thread of its own and only once the previous one has been
+     * consumed.
+     */
+    private <T> Flux<T> pageByPage(final String path, final Class<T[]> arrayType, final Object... uriVariables) {
+        return Flux.deferContextual(context -> pagesFrom(1, path, arrayType,
+                context.getOrDefault(RateLimitScheduler.FAIRNESS_KEY, ""), uriVariables));
+    }
+
+    private <T> Flux<T> pagesFrom(final int page, final String path, final Class<T[]> arrayType,
+                                  final String fairnessKey, final Object... uriVariables) {
+        return Mono.fromCallable(() -> fetchPage(path, page, arrayType, fairnessKey, uriVariables))
+                .subscribeOn(virtualThreads)
+                .flatMapMany(current -> {
+                    OptionalInt nextPage = GithubPagination.nextPage(current.headers());
+                    Flux<T> items = Flux.fromIterable(current.items());
+                    if (nextPage.isEmpty()) {
+                        return items;
+                    }
+                    return items.concatWith(Flux.defer(() ->
+                            pagesFrom(nextPage.getAsInt(), path, arrayType, fairnessKey, uriVariables)));
+                });
+    }
+
+    private static <T> T userRepos(final Supplier<T> call) {
+        try {
+            return call.get();
+        } catch (HttpClientErrorException.NotFound ex) {
+            throw new UserNotFoundException("User not found");
+        }
+    }
+
+    /**
+     * Pages listed in a {@code last} link are fetched concurrently, up to {@code prefetch-pages} at a time; otherwise
+     * {@code next} links are followed one by one.
+     */
+    private <T> List<T> fetchAllPages(final String path, final Class<T[]> arrayType, final String fairnessKey,
+                                      final Object... uriVariables) {
+        Page<T> firstPage = fetchPage(path, 1, arrayType, fairnessKey, uriVariables);
+        List<T> items = new ArrayList<>(firstPage.items());
+        OptionalInt lastPage = GithubPagination.lastPage(firstPage.headers());
+        if (lastPage.isPresent()) {
+            List<Integer> pages = IntStream.rangeClosed(2, lastPage.getAsInt()).boxed().toList();
+            StructuredFanOut.map(pages, githubProperties.prefetchPages(), "github-pages-",
+                            page -> fetchPage(path, page, arrayType, fairnessKey, uriVariables))
+                    .forEach(page -> items.addAll(page.items()));
+            return items;
+        }
+        OptionalInt nextPage = GithubPagination.nextPage(firstPage.headers());
+        while (nextPage.isPresent()) {
+            Page<T> page = fetchPage(path, nextPage.getAsInt(), arrayType, fairnessKey, uriVariables);
+            items.addAll(page.items());
+            nextPage = GithubPagination.nextPage(page.headers());
+        }
+        return items;
+    }
+
+    private <T> Page<T> fetchPage(final String path, final int page, final Class<T[]> arrayType,
+                                  final String fairnessKey, final Object... uriVariables) {
+        Object[] pageUriVariables = Arrays.copyOf(uriVariables, uriVariables.length + 2);
+        pageUriVariables[uriVariables.length] = githubProperties.pageSize();
+        pageUriVariables[uriVariables.length + 1] = page;
+        int maxRetries = githubProperties.rateLimit().maxRetries();
+        for (int attempt = 0; ; attempt++) {
+            boolean lastAttempt = attempt >= maxRetries;
+            RateLimitScheduler.Permit permit = rateLimitScheduler.acquire(fairnessKey).block();
+            long startNanos = System.nanoTime();
+            try {
+                Optional<Page<T>> result = restClient.get()
+                        .uri(path + "?per_page={perPage}&page={page}", pageUriVariables)
+                        .headers(permit::authorize)
+                        .exchange((request, response) -> {
+                            admissionControl.recordUpstreamLatency(System.nanoTime() - startNanos);
+                            HttpStatusCode status = response.getStatusCode();
+                            HttpHeaders headers = response.getHeaders();
+                            rateLimitScheduler.record(permit, status, headers);
+                            if (!lastAttempt && RateLimitScheduler.isRateLimited(status, headers)) {
+                                return Optional.empty();
+                            }
+                            if (status.isError()) {
+                                errorHandler.handleError(response);
+                            }
+                            T[] body = response.bodyTo(arrayType);
+                            return Optional.of(new Page<>(body == null ? List.of() : Arrays.asList(body), headers));
+                        });
+                if (result.isPresent()) {
+                    return result.get();
+                }
+                log.warn("GitHub rate limit hit for {}, queueing retry {}", path, attempt + 1);
+            } finally {
+                permit.release();
+            }
+        }
+    }
+
+    private record Page<T>(List<T> items, HttpHeaders headers) {
+    }
+}
@@ -1,29 +1,61 @@
 package com.ghfetcher.service;
 
+import com.ghfetcher.config.GithubProperties;
 import com.ghfetcher.dto.BranchWithCommitsDto;
 import com.ghfetcher.dto.RepositoryDto;
 import com.ghfetcher.error.UserNotFoundException;
 import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.client.WebClient;
 import org.springframework.web.reactive.function.client.WebClientResponseException;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.OptionalInt;
 
 @RequiredArgsConstructor
 @Service
+@ConditionalOnProperty(prefix = "service.github", name = "client", havingValue = "rest", matchIfMissing = true)
 class GithubClientWebFluxImpl implements GithubClient {
 
     private final WebClient webClient;
+    private final GithubProperties githubProperties;
 
     @Override
     public Flux<RepositoryDto> makeRequestForUserRepos(final String userName) {
-        return webClient.get()
-                .uri(uriBuilder -> uriBuilder
-                        .path("/users/{userName}/repos")
-                        .build(userName))
-                .retrieve()
-                .bodyToFlux(RepositoryDto.class)
+        return fetchUserRepos(userName, githubProperties.prefetchPages());
+    }
+
+    @Override
+    public Flux<RepositoryDto> makeRequestForUserReposPageByPage(final String userName, final boolean withBranches) {
+        return fetchUserRepos(userName, 1);
+    }
+
+    @Override
+    public Flux<BranchWithCommitsDto> makeRequestForBranches(final String userName, final String repoName) {
+        return fetchBranches(userName, repoName, githubProperties.prefetchPages());
+    }
+
+    @Override
+    public Flux<BranchWithCommitsDto> makeRequestForBranchesPageByPage(final String userName, final String repoName) {
+        return fetchBranches(userName, repoName, 1);
+    }
+
+    private Flux<BranchWithCommitsDto> fetchBranches(final String userName, final String repoName,
+                                                     final int prefetchPages) {
+        return fetchAllPages("/repos/{userName}/{repoName}/branches", BranchWithCommitsDto.class, prefetchPages,
+                userName, repoName);
+    }
+
+    private Flux<RepositoryDto> fetchUserRepos(final String userName, final int prefetchPages) {
+        return fetchAllPages("/users/{userName}/repos", RepositoryDto.class, prefetchPages, userName)
                 .onErrorResume(WebClientResponseException.class, ex -> {
                     if (ex.getStatusCode() == HttpStatus.NOT_FOUND) {
                         return Flux.error(new UserNotFoundException("User not found"));
@@ -32,13 +64,67 @@ class GithubClientWebFluxImpl implements GithubClient {
                 });
     }
 
-    @Override
-    public Flux<BranchWithCommitsDto> makeRequestForBranches(final String userName, final String repoName) {
+    /**
+     * With {@code prefetchPages} of 1 the pages are fetched strictly one after another, each only once the previous
+     * one has been consumed; otherwise at most {@code prefetchPages} pages are fetched ahead of the caller.
+     */
+    private <T> Flux<T> fetchAllPages(final String path, final Class<T> elementType, final int prefetchPages,
+                                      final Object... uriVariables) {
+        return fetchPage(path, 1, elementType, uriVariables)
+                .flatMapMany(firstPage -> followingPages(Flux.fromIterable(firstPage.getBody()),
+                        fetchFollowingPages(firstPage.getHeaders(), path, elementType, prefetchPages, uriVariables),
+                        prefetchPages));
+    }
+
+    private <T> Flux<T> fetchFollowingPages(final HttpHeaders headers, final String path, final Class<T> elementType,
+                                            final int prefetchPages, final Object... uriVariables) {
+        OptionalInt lastPage = GithubPagination.lastPage(headers);
+        if (lastPage.isPresent()) {
+            Flux<Integer> pages = Flux.range(2, Math.max(lastPage.getAsInt() - 1, 0));
+            return prefetchPages > 1
+                    ? pages.flatMapSequential(page -> fetchPage(path, page, elementType, uriVariables)
+                            .flatMapIterable(HttpEntity::getBody), prefetchPages)
+                    : pages.concatMap(page -> fetchPage(path, page, elementType, uriVariables)
+                            .flatMapIterable(HttpEntity::getBody), 0);
+        }
+        OptionalInt nextPage = GithubPagination.nextPage(headers);
+        if (nextPage.isEmpty()) {
+            return Flux.empty();
+        }
+        if (prefetchPages > 1) {
+            return fetchPage(path, nextPage.getAsInt(), elementType, uriVariables)
+                    .expand(page -> fetchNextPage(page.getHeaders(), path, elementType, uriVariables))
+                    .flatMapIterable(HttpEntity::getBody, prefetchPages);
+        }
+        return fetchPage(path, nextPage.getAsInt(), elementType, uriVariables)
+                .flatMapMany(page -> Flux.fromIterable(page.getBody())
+                        .concatWith(Flux.defer(() -> fetchFollowingPages(page.getHeaders(), path, elementType,
+                                prefetchPages, uriVariables))));
+    }
+
+    private <T> Mono<ResponseEntity<List<T>>> fetchNextPage(final HttpHeaders headers, final String path,
+                                                            final Class<T> elementType, final Object... uriVariables) {
+        OptionalInt nextPage = GithubPagination.nextPage(headers);
+        return nextPage.isPresent() ? fetchPage(path, nextPage.getAsInt(), elementType, uriVariables) : Mono.empty();
+    }
+
+    private static <T> Flux<T> followingPages(final Flux<T> page, final Flux<T> following, final int prefetchPages) {
+        return prefetchPages > 1 ? Flux.mergeSequential(page, following) : page.concatWith(following);
+    }
+
+    /**
+     * Reads the whole page before handing it on, so its rate limit permit is released as soon as the page has
+     * arrived. Streaming the body instead would keep the permit until the caller got round to the last item, and
+     * listings waiting on the branch calls of their repositories could then hold every permit between them.
+     */
+    private <T> Mono<ResponseEntity<List<T>>> fetchPage(final String path, final int page,
+                                                        final Class<T> elementType, final Object... uriVariables) {
+        Object[] pageUriVariables = Arrays.copyOf(uriVariables, uriVariables.length + 2);
+        pageUriVariables[uriVariables.length] = githubProperties.pageSize();
+        pageUriVariables[uriVariables.length + 1] = page;
         return webClient.get()
-                .uri(uriBuilder -> uriBuilder
-                        .path("/repos/{userName}/{repoName}/branches")
-                        .build(userName, repoName))
+                .uri(path + "?per_page={perPage}&page={page}", pageUriVariables)
                 .retrieve()
-                .bodyToFlux(BranchWithCommitsDto.class);
+                .toEntityList(elementType);
     }
-}
\ No newline at end of file
+}
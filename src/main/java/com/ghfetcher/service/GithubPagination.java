@@ -0,0 +1,43 @@
+package com.ghfetcher.service;
+
+import org.springframework.http.HttpHeaders;
+
+import java.util.OptionalInt;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Reads page numbers out of GitHub's {@code Link} response header, e.g.
+ * {@code <https://api.github.com/user/1/repos?page=2>; rel="next", <...?page=5>; rel="last"}.
+ */
+final class GithubPagination {
+
+    private static final Pattern LINK_PATTERN = Pattern.compile("<([^>]*)>\\s*;\\s*rel=\"([^\"]+)\"");
+    private static final Pattern PAGE_PATTERN = Pattern.compile("[?&]page=(\\d+)");
+
+    private GithubPagination() {
+    }
+
+    static OptionalInt nextPage(final HttpHeaders headers) {
+        return findPage(headers, "next");
+    }
+
+    static OptionalInt lastPage(final HttpHeaders headers) {
+        return findPage(headers, "last");
+    }
+
+    private static OptionalInt findPage(final HttpHeaders headers, final String relation) {
+        String linkHeader = headers.getFirst(HttpHeaders.LINK);
+        if (linkHeader == null) {
+            return OptionalInt.empty();
+        }
+        Matcher link = LINK_PATTERN.matcher(linkHeader);
+        while (link.find()) {
+            if (link.group(2).equals(relation)) {
+                Matcher page = PAGE_PATTERN.matcher(link.group(1));
+                return page.find() ? OptionalInt.of(Integer.parseInt(page.group(1))) : OptionalInt.empty();
+            }
+        }
+        return OptionalInt.empty();
+    }
+}
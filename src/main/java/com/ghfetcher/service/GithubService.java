@@ -1,37 +1,456 @@
 package com.ghfetcher.service;
 
+import com.ghfetcher.admission.AdmissionControl;
+import com.ghfetcher.cache.NameInterner;
+import com.ghfetcher.config.GithubProperties;
+import com.ghfetcher.dto.BranchWithCommitsDto;
 import com.ghfetcher.dto.BranchWithShaDto;
 import com.ghfetcher.dto.RepositoryDto;
 import com.ghfetcher.dto.RepositoryResponseDto;
-import lombok.RequiredArgsConstructor;
+import com.ghfetcher.dto.UserRepositoriesResponseDto;
+import com.ghfetcher.error.BatchTooLargeException;
+import com.ghfetcher.error.ErrorResponseDto;
+import com.ghfetcher.error.ServiceOverloadedException;
+import com.ghfetcher.error.UpstreamUnavailableException;
+import com.ghfetcher.error.UserNotFoundException;
+import com.ghfetcher.metrics.FanOutTally;
+import com.ghfetcher.metrics.FetchMetrics;
+import com.ghfetcher.metrics.UpstreamWaitTracker;
+import com.ghfetcher.persistence.SnapshotStore;
+import com.ghfetcher.persistence.StoredUser;
+import com.ghfetcher.ratelimit.RateLimitScheduler;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.util.context.ContextView;
 
-@RequiredArgsConstructor
+import java.time.Clock;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+@Log4j2
 @Service
 public class GithubService {
 
+    static final String BACKGROUND_REFRESH_FAIRNESS_KEY = "background-refresh";
+
     private final GithubClient githubClient;
+    private final RateLimitScheduler rateLimitScheduler;
+    private final FetchMetrics fetchMetrics;
+    private final AdmissionControl admissionControl;
+    private final GithubProperties githubProperties;
+    private final SingleFlight<String, RepositoryResponseDto> userRequests = new SingleFlight<>();
+    private final SingleFlight<ProjectedRequest, RepositoryResponseDto> projectedRequests = new SingleFlight<>();
+    private final SingleFlight<String, BranchWithShaDto> branchRequests = new SingleFlight<>();
+    private final RepositorySnapshots repositorySnapshots;
+    private final HotUsers hotUsers;
+    private final SnapshotStore snapshotStore;
+    private final Clock clock;
+
+    @Autowired
+    public GithubService(final GithubClient githubClient, final RateLimitScheduler rateLimitScheduler,
+                         final FetchMetrics fetchMetrics, final AdmissionControl admissionControl,
+                         final GithubProperties githubProperties, final SnapshotStore snapshotStore) {
+        this(githubClient, rateLimitScheduler, fetchMetrics, admissionControl, githubProperties, snapshotStore,
+                Clock.systemUTC());
+    }
 
+    GithubService(final GithubClient githubClient, final RateLimitScheduler rateLimitScheduler,
+                  final FetchMetrics fetchMetrics, final AdmissionControl admissionControl,
+                  final GithubProperties githubProperties, final SnapshotStore snapshotStore, final Clock clock) {
+        this.githubClient = githubClient;
+        this.rateLimitScheduler = rateLimitScheduler;
+        this.fetchMetrics = fetchMetrics;
+        this.admissionControl = admissionControl;
+        this.githubProperties = githubProperties;
+        NameInterner interner = new NameInterner(githubProperties.cache().maxInternedNames());
+        this.repositorySnapshots = new RepositorySnapshots(githubProperties.cache().maxRepositorySnapshots(), interner);
+        this.hotUsers = new HotUsers(githubProperties.refresh(), clock, interner);
+        this.snapshotStore = snapshotStore;
+        this.clock = clock;
+    }
+
+    /**
+     * Hot users are answered from their last good snapshot, even a slightly stale one, while a single background
+     * refresh brings it up to date; everybody else goes upstream.
+     */
     public Flux<RepositoryResponseDto> fetchUserRepositoriesWithBranches(final String userName) {
-        return githubClient.makeRequestForUserRepos(userName)
-                .filter(repository -> !repository.fork())
-                .flatMap(repository -> createRepositoryResponseDto(userName, repository));
+        return withRequestContext(userName, () -> fromSnapshotOrUpstream(userName));
+    }
+
+    /**
+     * Resolves only what the query asks for. Hot users are answered by projecting their snapshot, or the result of
+     * the full fetch that produces it, and a request joins a full fetch of the user already in flight. Otherwise the
+     * listing is paged lazily and cancelled once {@code limit} repositories were taken, branch listings stop once
+     * {@code maxBranches} branches were taken and no branch is fetched for {@link RepositoryQuery#namesOnly() names
+     * only}; concurrent requests with the same query share that fetch.
+     */
+    public Flux<RepositoryResponseDto> fetchUserRepositoriesWithBranches(final String userName,
+                                                                         final RepositoryQuery query) {
+        if (query.isUnrestricted()) {
+            return fetchUserRepositoriesWithBranches(userName);
+        }
+        return withRequestContext(userName, () -> fromSnapshotOrUpstream(userName, query));
+    }
+
+    private Flux<RepositoryResponseDto> withRequestContext(final String userName,
+                                                           final Supplier<Flux<RepositoryResponseDto>> request) {
+        return Flux.defer(() -> {
+            long startNanos = System.nanoTime();
+            UpstreamWaitTracker upstreamWaitTracker = new UpstreamWaitTracker();
+            FanOutTally fanOut = new FanOutTally();
+            return request.get()
+                    .doFinally(signal -> fetchMetrics.requestCompleted(startNanos, upstreamWaitTracker, fanOut))
+                    .contextWrite(context -> context
+                            .put(UpstreamWaitTracker.CONTEXT_KEY, upstreamWaitTracker)
+                            .put(FanOutTally.CONTEXT_KEY, fanOut)
+                            .put(RateLimitScheduler.FAIRNESS_KEY, userName));
+        });
+    }
+
+    /**
+     * Decays request counts and refreshes the hot users whose snapshot is due, for as long as the rate limit budget
+     * stays above {@code service.github.refresh.min-remaining-budget}.
+     */
+    public Mono<Void> refreshHotUsers() {
+        return Mono.defer(() -> {
+            hotUsers.decay();
+            return Flux.fromIterable(hotUsers.dueForRefresh())
+                    .takeWhile(userName -> hasRefreshBudget())
+                    .flatMap(this::refresh, githubProperties.refresh().concurrency())
+                    .then();
+        });
+    }
+
+    private Flux<RepositoryResponseDto> fromSnapshotOrUpstream(final String userName) {
+        return fromSnapshotOrUpstream(userName, RepositoryQuery.ALL);
+    }
+
+    private Flux<RepositoryResponseDto> fromSnapshotOrUpstream(final String userName, final RepositoryQuery query) {
+        if (!githubProperties.refresh().enabled()) {
+            return fetchFromUpstream(userName, query);
+        }
+        hotUsers.recordRequest(userName);
+        if (hotUsers.claimRestore(userName)) {
+            return snapshotStore.load(userName)
+                    .doOnNext(this::restore)
+                    .onErrorResume(ex -> {
+                        log.warn("Could not restore the persisted snapshot of {}: {}", userName, ex.toString());
+                        return Mono.empty();
+                    })
+                    .thenMany(Flux.defer(() -> fromSnapshotOrFetch(userName, query)));
+        }
+        return fromSnapshotOrFetch(userName, query);
+    }
+
+    private Flux<RepositoryResponseDto> fromSnapshotOrFetch(final String userName, final RepositoryQuery query) {
+        Optional<HotUsers.Snapshot> snapshot = hotUsers.snapshot(userName);
+        if (snapshot.isEmpty()) {
+            // a hot user without a snapshot gets the full fetch, so the snapshot exists for the next request
+            return hotUsers.isDueForRefresh(userName)
+                    ? project(query, fetchFromUpstream(userName))
+                    : fetchFromUpstream(userName, query);
+        }
+        fetchMetrics.snapshotServed();
+        if (hotUsers.isDueForRefresh(userName)) {
+            if (hasRefreshBudget()) {
+                refresh(userName).subscribe();
+            } else {
+                fetchMetrics.backgroundRefresh("skipped");
+            }
+        }
+        return project(query, snapshot.get().repositories().toFlux());
+    }
+
+    private static Flux<RepositoryResponseDto> project(final RepositoryQuery query,
+                                                       final Flux<RepositoryResponseDto> repositories) {
+        return query.isUnrestricted() ? repositories : query.page(repositories).map(query::project);
+    }
+
+    private Flux<RepositoryResponseDto> fetchFromUpstream(final String userName, final RepositoryQuery query) {
+        if (query.isUnrestricted()) {
+            return fetchFromUpstream(userName);
+        }
+        if (userRequests.isInFlight(userName)) {
+            return project(query, fetchFromUpstream(userName));
+        }
+        return projectedRequests.execute(new ProjectedRequest(userName, query), () -> fetchProjected(userName, query));
+    }
+
+    private Flux<RepositoryResponseDto> fetchProjected(final String userName, final RepositoryQuery query) {
+        return Flux.deferContextual(context -> {
+            FanOutTally fanOut = FanOutTally.from(context);
+            return query.page(githubClient.makeRequestForUserReposPageByPage(userName, !query.namesOnly())
+                            .doOnNext(repository -> fetchMetrics.repositorySeen(fanOut, repository.fork()))
+                            .filter(repository -> !repository.fork()))
+                    .flatMap(repository -> query.namesOnly()
+                                    ? Mono.just(RepositoryResponseDto.builder()
+                                            .ownerLogin(userName)
+                                            .repositoryName(repository.name())
+                                            .build())
+                                    : createRepositoryResponseDto(userName, repository, query),
+                            rateLimitScheduler.fanOutConcurrency());
+        });
+    }
+
+    private Flux<RepositoryResponseDto> fetchFromUpstream(final String userName) {
+        return userRequests.execute(userName, () -> Flux.deferContextual(context -> {
+            List<RepositoryResponseDto> repositories = new ArrayList<>();
+            Map<String, Instant> pushedAt = new HashMap<>();
+            FanOutTally fanOut = FanOutTally.from(context);
+            Flux<RepositoryResponseDto> resolved = githubClient instanceof BlockingGithubClient blockingClient
+                    ? fetchOnVirtualThreads(blockingClient, userName, pushedAt, context)
+                    : githubClient.makeRequestForUserRepos(userName)
+                            .doOnNext(repository -> fetchMetrics.repositorySeen(fanOut, repository.fork()))
+                            .filter(repository -> !repository.fork())
+                            .doOnNext(repository -> pushedAt.put(repository.name(), repository.pushedAt()))
+                            .flatMap(repository -> createRepositoryResponseDto(userName, repository),
+                                    rateLimitScheduler.fanOutConcurrency());
+            return resolved
+                    .doOnNext(repositories::add)
+                    .doOnComplete(() -> {
+                        if (hotUsers.store(userName, repositories)) {
+                            snapshotStore.save(toStoredUser(userName, repositories, pushedAt));
+                        }
+                    });
+        }));
+    }
+
+    /**
+     * The blocking counterpart of the reactive fan-out: lists the user on a virtual thread of its own and resolves
+     * the repositories in a {@link StructuredFanOut}, taking the branches of repositories not pushed since from
+     * {@link RepositorySnapshots} and sharing concurrent branch calls like the reactive path. Repositories are emitted
+     * as they are resolved; cancelling interrupts the fan-out, which leaves no call behind.
+     */
+    private Flux<RepositoryResponseDto> fetchOnVirtualThreads(final BlockingGithubClient client, final String userName,
+                                                              final Map<String, Instant> pushedAt,
+                                                              final ContextView context) {
+        FanOutTally fanOut = FanOutTally.from(context);
+        String fairnessKey = context.getOrDefault(RateLimitScheduler.FAIRNESS_KEY, "");
+        return Flux.create(sink -> {
+            Thread fetch = Thread.ofVirtual().name("github-user-" + userName).start(() -> {
+                try {
+                    List<RepositoryDto> sources = new ArrayList<>();
+                    for (RepositoryDto repository : client.fetchUserRepos(userName, fairnessKey)) {
+                        fetchMetrics.repositorySeen(fanOut, repository.fork());
+                        if (!repository.fork()) {
+                            pushedAt.put(repository.name(), repository.pushedAt());
+                            sources.add(repository);
+                        }
+                    }
+                    StructuredFanOut.map(sources, rateLimitScheduler.fanOutConcurrency(), "github-branches-",
+                            repository -> {
+                                RepositoryResponseDto resolved = resolveBlocking(client, userName, repository,
+                                        context);
+                                sink.next(resolved);
+                                return resolved;
+                            });
+                    sink.complete();
+                } catch (RuntimeException | Error ex) {
+                    if (!sink.isCancelled()) {
+                        sink.error(ex);
+                    }
+                }
+            });
+            sink.onCancel(fetch::interrupt);
+        });
+    }
+
+    private RepositoryResponseDto resolveBlocking(final BlockingGithubClient client, final String userName,
+                                                  final RepositoryDto repo, final ContextView context) {
+        List<BranchWithShaDto> branches = repositorySnapshots
+                .branchesIfUnchanged(userName, repo.name(), repo.pushedAt())
+                .map(unchanged -> {
+                    fetchMetrics.branchCallSkipped(FanOutTally.from(context));
+                    return unchanged;
+                })
+                .orElseGet(() -> {
+                    List<BranchWithShaDto> fetched = branchRequests.execute(userName + "/" + repo.name(),
+                                    () -> Flux.deferContextual(shared -> {
+                                        fetchMetrics.branchCallIssued(FanOutTally.from(shared));
+                                        return Flux.fromIterable(client.fetchBranches(userName, repo.name(),
+                                                shared.getOrDefault(RateLimitScheduler.FAIRNESS_KEY, "")));
+                                    }).map(GithubService::toBranchWithSha))
+                            .collectList()
+                            .contextWrite(context)
+                            .block();
+                    repositorySnapshots.store(userName, repo.name(), repo.pushedAt(), fetched);
+                    return fetched;
+                });
+        return RepositoryResponseDto.builder()
+                .ownerLogin(userName)
+                .repositoryName(repo.name())
+                .branches(branches)
+                .build();
+    }
+
+    /**
+     * Seeds the per-repository branch snapshots from a result persisted before a restart, so later fetches skip
+     * the repositories not pushed since, and serves the result itself while it is within {@code max-staleness}.
+     */
+    private void restore(final StoredUser storedUser) {
+        String userName = storedUser.userName();
+        List<RepositoryResponseDto> repositories = new ArrayList<>(storedUser.repositories().size());
+        for (StoredUser.Repository repository : storedUser.repositories()) {
+            repositorySnapshots.store(userName, repository.name(), repository.pushedAt(), repository.branches());
+            repositories.add(RepositoryResponseDto.builder()
+                    .ownerLogin(userName)
+                    .repositoryName(repository.name())
+                    .branches(repository.branches())
+                    .build());
+        }
+        hotUsers.restore(userName, repositories, storedUser.fetchedAt());
+    }
+
+    private StoredUser toStoredUser(final String userName, final List<RepositoryResponseDto> repositories,
+                                    final Map<String, Instant> pushedAt) {
+        return new StoredUser(userName, clock.instant(), repositories.stream()
+                .map(repository -> new StoredUser.Repository(repository.repositoryName(),
+                        pushedAt.get(repository.repositoryName()), repository.branches()))
+                .toList());
+    }
+
+    private Mono<Void> refresh(final String userName) {
+        if (!hotUsers.startRefresh(userName)) {
+            return Mono.empty();
+        }
+        return fetchFromUpstream(userName)
+                .then()
+                .doOnSuccess(done -> fetchMetrics.backgroundRefresh("success"))
+                .onErrorResume(ex -> {
+                    log.warn("Background refresh of {} failed, keeping the last snapshot: {}", userName, ex.toString());
+                    fetchMetrics.backgroundRefresh("failure");
+                    return Mono.empty();
+                })
+                .doFinally(signal -> hotUsers.finishRefresh(userName))
+                .contextWrite(context -> context.put(RateLimitScheduler.FAIRNESS_KEY, BACKGROUND_REFRESH_FAIRNESS_KEY));
+    }
+
+    private boolean hasRefreshBudget() {
+        long remaining = rateLimitScheduler.remainingBudget();
+        return (remaining < 0 || remaining >= githubProperties.refresh().minRemainingBudget())
+                && rateLimitScheduler.queueDepth() == 0;
+    }
+
+    /**
+     * Resolves several users at once, emitting one result per user as soon as that user completes. Duplicate and
+     * blank names are dropped, at most {@code service.github.batch.max-concurrent-users} users are resolved at a time
+     * and all of them share the {@link RateLimitScheduler}, which hands out upstream permits round-robin per user.
+     * Every user is admitted by {@link AdmissionControl} on its own, so a batch weighs as much as the single requests
+     * it stands for, and a user shed for overload is reported like any other failure.
+     * A user that cannot be resolved, because it is unknown or because GitHub failed, is reported inline with the
+     * status its own request would have got instead of failing the whole batch.
+     */
+    public Flux<UserRepositoriesResponseDto> fetchUsersRepositoriesWithBranches(final List<String> userNames) {
+        Set<String> distinctUserNames = userNames.stream()
+                .filter(userName -> userName != null && !userName.isBlank())
+                .map(String::trim)
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+        GithubProperties.Batch batch = githubProperties.batch();
+        if (distinctUserNames.size() > batch.maxUsers()) {
+            return Flux.error(new BatchTooLargeException(
+                    "At most %d users can be requested at once".formatted(batch.maxUsers())));
+        }
+        return Flux.fromIterable(distinctUserNames)
+                .flatMap(userName -> admissionControl.admit(() -> fetchUserRepositoriesWithBranches(userName))
+                        .collectList()
+                        .map(repositories -> UserRepositoriesResponseDto.found(userName, repositories))
+                        .onErrorResume(ex -> Mono.just(UserRepositoriesResponseDto.failed(
+                                userName, toBatchError(userName, ex)))),
+                        batch.maxConcurrentUsers());
+    }
+
+    private static ErrorResponseDto toBatchError(final String userName, final Throwable error) {
+        if (error instanceof UserNotFoundException) {
+            return new ErrorResponseDto(404, error.getMessage());
+        }
+        log.warn("Could not resolve {} in a batch: {}", userName, error.toString());
+        if (error instanceof UpstreamUnavailableException || error instanceof ServiceOverloadedException) {
+            return new ErrorResponseDto(503, error.getMessage());
+        }
+        if (error instanceof TimeoutException) {
+            return new ErrorResponseDto(504, "GitHub did not respond in time");
+        }
+        if (error instanceof WebClientResponseException responseException) {
+            return new ErrorResponseDto(502, "GitHub responded with " + responseException.getStatusCode());
+        }
+        if (error instanceof WebClientRequestException) {
+            return new ErrorResponseDto(502, "GitHub could not be reached");
+        }
+        return new ErrorResponseDto(500, "Could not fetch repositories");
     }
 
     Mono<RepositoryResponseDto> createRepositoryResponseDto(final String userName, final RepositoryDto repo) {
-        return fetchBranches(userName, repo.name())
-                .collectList()
+        return createRepositoryResponseDto(userName, repo, RepositoryQuery.ALL);
+    }
+
+    /**
+     * Takes the branches embedded in the listing when the client provides them, otherwise reuses the branches fetched
+     * on an earlier request if the repository wasn't pushed since, and only then asks GitHub for them. A query
+     * limiting the branches stops the listing early; such a partial listing is not kept for later requests.
+     */
+    private Mono<RepositoryResponseDto> createRepositoryResponseDto(final String userName, final RepositoryDto repo,
+                                                                    final RepositoryQuery query) {
+        Mono<List<BranchWithShaDto>> branchSource;
+        if (repo.branches() != null) {
+            branchSource = Flux.fromIterable(repo.branches()).map(GithubService::toBranchWithSha).collectList();
+        } else {
+            branchSource = Mono.deferContextual(context -> repositorySnapshots
+                    .branchesIfUnchanged(userName, repo.name(), repo.pushedAt())
+                    .map(branches -> {
+                        fetchMetrics.branchCallSkipped(FanOutTally.from(context));
+                        return Mono.just(branches);
+                    })
+                    .orElseGet(() -> query.limitsBranches()
+                            ? query.branches(fetchBranches(userName, repo.name(), true)).collectList()
+                            : fetchBranches(userName, repo.name())
+                                    .collectList()
+                                    .doOnNext(branches -> repositorySnapshots.store(
+                                            userName, repo.name(), repo.pushedAt(), branches))));
+        }
+        return branchSource
                 .map(branches -> RepositoryResponseDto.builder()
                         .ownerLogin(userName)
                         .repositoryName(repo.name())
                         .branches(branches)
-                        .build());
+                        .build())
+                .map(query::project);
     }
 
     Flux<BranchWithShaDto> fetchBranches(final String userName, final String repoName) {
-        return githubClient.makeRequestForBranches(userName, repoName)
-                .map(branchDto -> new BranchWithShaDto(branchDto.name(), branchDto.commit().sha()));
+        return fetchBranches(userName, repoName, false);
+    }
+
+    /**
+     * With {@code pageByPage} the pages are only requested as the branches are taken, for callers that stop after
+     * the first few. Either way concurrent calls for the same repository share one execution.
+     */
+    private Flux<BranchWithShaDto> fetchBranches(final String userName, final String repoName,
+                                                 final boolean pageByPage) {
+        return branchRequests.execute(userName + "/" + repoName, () -> Flux.deferContextual(context -> (pageByPage
+                        ? githubClient.makeRequestForBranchesPageByPage(userName, repoName)
+                        : githubClient.makeRequestForBranches(userName, repoName))
+                .doOnSubscribe(subscription -> fetchMetrics.branchCallIssued(FanOutTally.from(context)))
+                .map(GithubService::toBranchWithSha)));
+    }
+
+    private static BranchWithShaDto toBranchWithSha(final BranchWithCommitsDto branchDto) {
+        return new BranchWithShaDto(branchDto.name(), branchDto.commit().sha());
+    }
+
+    private record ProjectedRequest(String userName, RepositoryQuery query) {
     }
 }
\ No newline at end of file
@@ -0,0 +1,35 @@
+package com.ghfetcher.service;
+
+import com.ghfetcher.config.GithubProperties;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.SchedulingConfigurer;
+import org.springframework.scheduling.config.FixedDelayTask;
+import org.springframework.scheduling.config.ScheduledTaskRegistrar;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Keeps the snapshots of hot users warm between their requests. Runs with a fixed delay of
+ * {@code service.github.refresh.check-interval}, so a slow round of refreshes postpones the next one instead of
+ * overlapping it.
+ */
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(prefix = "service.github.refresh", name = "enabled", havingValue = "true", matchIfMissing = true)
+class HotUserRefresher implements SchedulingConfigurer {
+
+    private final GithubService githubService;
+    private final GithubProperties githubProperties;
+
+    @Override
+    public void configureTasks(final ScheduledTaskRegistrar taskRegistrar) {
+        Duration checkInterval = githubProperties.refresh().checkInterval();
+        taskRegistrar.addFixedDelayTask(new FixedDelayTask(this::refreshHotUsers, checkInterval, checkInterval));
+    }
+
+    void refreshHotUsers() {
+        githubService.refreshHotUsers().block();
+    }
+}
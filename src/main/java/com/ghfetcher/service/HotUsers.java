@@ -0,0 +1,157 @@
+package com.ghfetcher.service;
+
+import com.ghfetcher.cache.NameInterner;
+import com.ghfetcher.cache.PackedRepositories;
+import com.ghfetcher.config.GithubProperties;
+import com.ghfetcher.dto.RepositoryResponseDto;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Request frequency per user name and the last good response of the users requested often enough to be hot.
+ * Hits are halved on every {@link #decay()}, so a user stays hot only while it keeps being requested; cold users
+ * lose their snapshot and are forgotten once their hits reach zero. Snapshots are held packed, see
+ * {@link PackedRepositories}.
+ */
+class HotUsers {
+
+    private final GithubProperties.Refresh settings;
+    private final Clock clock;
+    private final NameInterner interner;
+    private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<>();
+
+    HotUsers(final GithubProperties.Refresh settings, final Clock clock, final NameInterner interner) {
+        this.settings = settings;
+        this.clock = clock;
+        this.interner = interner;
+    }
+
+    void recordRequest(final String userName) {
+        Entry entry = entries.get(userName);
+        if (entry == null) {
+            if (entries.size() >= settings.maxTrackedUsers()) {
+                return;
+            }
+            entry = entries.computeIfAbsent(userName, key -> new Entry());
+        }
+        entry.hits.incrementAndGet();
+    }
+
+    /**
+     * Last good response of a hot user, unless it is older than {@code max-staleness}.
+     */
+    Optional<Snapshot> snapshot(final String userName) {
+        Entry entry = entries.get(userName);
+        if (entry == null || !entry.isHot()) {
+            return Optional.empty();
+        }
+        Snapshot snapshot = entry.snapshot;
+        if (snapshot == null || age(snapshot).compareTo(settings.maxStaleness()) > 0) {
+            return Optional.empty();
+        }
+        return Optional.of(snapshot);
+    }
+
+    /**
+     * @return whether the user is hot and the snapshot was kept
+     */
+    boolean store(final String userName, final List<RepositoryResponseDto> repositories) {
+        Entry entry = entries.get(userName);
+        if (entry != null && entry.isHot()) {
+            entry.snapshot = new Snapshot(PackedRepositories.pack(userName, repositories, interner), clock.instant());
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Reinstates a snapshot persisted before a restart; the user was hot then, so it counts as hot again.
+     */
+    void restore(final String userName, final List<RepositoryResponseDto> repositories, final Instant fetchedAt) {
+        Entry entry = entries.get(userName);
+        if (entry != null && entry.snapshot == null) {
+            entry.hits.accumulateAndGet(settings.hotThreshold(), Math::max);
+            entry.snapshot = new Snapshot(PackedRepositories.pack(userName, repositories, interner), fetchedAt);
+        }
+    }
+
+    /**
+     * Whether the persisted snapshot of a tracked user still has to be looked up; {@code true} only once per user.
+     */
+    boolean claimRestore(final String userName) {
+        Entry entry = entries.get(userName);
+        return entry != null && entry.restoreClaimed.compareAndSet(false, true);
+    }
+
+    /**
+     * Whether the user is hot and its snapshot is missing or older than {@code refresh-after}.
+     */
+    boolean isDueForRefresh(final String userName) {
+        Entry entry = entries.get(userName);
+        if (entry == null || !entry.isHot()) {
+            return false;
+        }
+        Snapshot snapshot = entry.snapshot;
+        return snapshot == null || age(snapshot).compareTo(settings.refreshAfter()) >= 0;
+    }
+
+    List<String> dueForRefresh() {
+        return entries.keySet().stream()
+                .filter(this::isDueForRefresh)
+                .toList();
+    }
+
+    /**
+     * Marks a background refresh of the user as running; {@code false} when one is already running.
+     */
+    boolean startRefresh(final String userName) {
+        Entry entry = entries.get(userName);
+        return entry != null && entry.refreshing.compareAndSet(false, true);
+    }
+
+    void finishRefresh(final String userName) {
+        Entry entry = entries.get(userName);
+        if (entry != null) {
+            entry.refreshing.set(false);
+        }
+    }
+
+    void decay() {
+        entries.forEach((userName, entry) -> {
+            int hits = entry.hits.updateAndGet(value -> value / 2);
+            if (!entry.isHot()) {
+                entry.snapshot = null;
+            }
+            if (hits == 0 && !entry.refreshing.get()) {
+                entries.remove(userName, entry);
+            }
+        });
+    }
+
+    private Duration age(final Snapshot snapshot) {
+        return Duration.between(snapshot.fetchedAt(), clock.instant());
+    }
+
+    record Snapshot(PackedRepositories repositories, Instant fetchedAt) {
+    }
+
+    private final class Entry {
+
+        private final AtomicInteger hits = new AtomicInteger();
+        private final AtomicBoolean refreshing = new AtomicBoolean();
+        private final AtomicBoolean restoreClaimed = new AtomicBoolean();
+        private volatile Snapshot snapshot;
+
+        private boolean isHot() {
+            return hits.get() >= settings.hotThreshold();
+        }
+    }
+}
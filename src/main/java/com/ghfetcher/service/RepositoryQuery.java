@@ -0,0 +1,97 @@
+package com.ghfetcher.service;
+
+import com.ghfetcher.dto.BranchWithShaDto;
+import com.ghfetcher.dto.RepositoryResponseDto;
+import com.ghfetcher.error.InvalidQueryException;
+import reactor.core.publisher.Flux;
+
+import java.util.List;
+
+/**
+ * Which part of a user's repositories a caller wants. Repositories are counted in GitHub's listing order after
+ * forks are dropped; {@code null} limits and prefix mean no restriction.
+ *
+ * @param namesOnly    return repository names without branches, so no branch is ever fetched
+ * @param offset       non-fork repositories to skip
+ * @param limit        maximum number of repositories
+ * @param maxBranches  maximum number of branches per repository, after filtering by prefix
+ * @param branchPrefix only branches whose name starts with it
+ */
+public record RepositoryQuery(boolean namesOnly, int offset, Integer limit, Integer maxBranches, String branchPrefix) {
+
+    public static final RepositoryQuery ALL = new RepositoryQuery(false, 0, null, null, null);
+
+    public RepositoryQuery {
+        if (offset < 0) {
+            throw new InvalidQueryException("offset must not be negative");
+        }
+        if (limit != null && limit < 0) {
+            throw new InvalidQueryException("limit must not be negative");
+        }
+        if (maxBranches != null && maxBranches < 0) {
+            throw new InvalidQueryException("maxBranches must not be negative");
+        }
+        if (branchPrefix != null && branchPrefix.isEmpty()) {
+            branchPrefix = null;
+        }
+    }
+
+    public boolean isUnrestricted() {
+        return equals(ALL);
+    }
+
+    /**
+     * Whether branch listings can stop early, because only the first {@code maxBranches} matching ones are wanted.
+     */
+    boolean limitsBranches() {
+        return maxBranches != null;
+    }
+
+    /**
+     * Applies {@code offset} and {@code limit}; cancels the source as soon as the limit is reached. A zero limit still
+     * takes the first repository, so an unknown user fails as it would with any other limit.
+     */
+    <T> Flux<T> page(final Flux<T> repositories) {
+        if (limit != null && limit == 0) {
+            return repositories.take(1, true).thenMany(Flux.empty());
+        }
+        Flux<T> skipped = offset > 0 ? repositories.skip(offset) : repositories;
+        return limit != null ? skipped.take(limit, true) : skipped;
+    }
+
+    RepositoryResponseDto project(final RepositoryResponseDto repository) {
+        if (namesOnly) {
+            return RepositoryResponseDto.builder()
+                    .ownerLogin(repository.ownerLogin())
+                    .repositoryName(repository.repositoryName())
+                    .build();
+        }
+        if (maxBranches == null && branchPrefix == null) {
+            return repository;
+        }
+        return RepositoryResponseDto.builder()
+                .ownerLogin(repository.ownerLogin())
+                .repositoryName(repository.repositoryName())
+                .branches(projectBranches(repository.branches()))
+                .build();
+    }
+
+    /**
+     * Applies {@code branchPrefix} and {@code maxBranches}; cancels the listing as soon as enough branches were taken.
+     */
+    Flux<BranchWithShaDto> branches(final Flux<BranchWithShaDto> branches) {
+        Flux<BranchWithShaDto> matching = branchPrefix != null ? branches.filter(this::matchesPrefix) : branches;
+        return maxBranches != null ? matching.take(maxBranches, true) : matching;
+    }
+
+    private List<BranchWithShaDto> projectBranches(final List<BranchWithShaDto> branches) {
+        return branches.stream()
+                .filter(this::matchesPrefix)
+                .limit(maxBranches == null ? Long.MAX_VALUE : maxBranches)
+                .toList();
+    }
+
+    private boolean matchesPrefix(final BranchWithShaDto branch) {
+        return branchPrefix == null || (branch.name() != null && branch.name().startsWith(branchPrefix));
+    }
+}
@@ -0,0 +1,56 @@
+package com.ghfetcher.service;
+
+import com.ghfetcher.cache.LruCache;
+import com.ghfetcher.cache.NameInterner;
+import com.ghfetcher.cache.PackedBranches;
+import com.ghfetcher.dto.BranchWithShaDto;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Branches last fetched for each repository, keyed by owner and repository name and stamped with the repository's
+ * {@code pushed_at} at that time. Any push, including creating or deleting a branch, moves {@code pushed_at}, so a
+ * snapshot with an unchanged stamp still holds the current branch heads. Branches are held packed, see
+ * {@link PackedBranches}.
+ */
+class RepositorySnapshots {
+
+    private final LruCache<String, Snapshot> snapshots;
+    private final NameInterner interner;
+
+    RepositorySnapshots(final int maxEntries, final NameInterner interner) {
+        this.snapshots = new LruCache<>(maxEntries);
+        this.interner = interner;
+    }
+
+    Optional<List<BranchWithShaDto>> branchesIfUnchanged(final String userName, final String repoName,
+                                                         final Instant pushedAt) {
+        if (pushedAt == null) {
+            return Optional.empty();
+        }
+        Snapshot snapshot = snapshots.get(key(userName, repoName));
+        return snapshot != null && snapshot.pushedAt().equals(pushedAt)
+                ? Optional.of(snapshot.branches().toList())
+                : Optional.empty();
+    }
+
+    void store(final String userName, final String repoName, final Instant pushedAt,
+               final List<BranchWithShaDto> branches) {
+        if (pushedAt != null) {
+            snapshots.put(key(userName, repoName), new Snapshot(pushedAt, PackedBranches.pack(branches, interner)));
+        }
+    }
+
+    int size() {
+        return snapshots.size();
+    }
+
+    private static String key(final String userName, final String repoName) {
+        return userName + "/" + repoName;
+    }
+
+    private record Snapshot(Instant pushedAt, PackedBranches branches) {
+    }
+}
@@ -0,0 +1,82 @@
+package com.ghfetcher.service;
+
+import com.ghfetcher.metrics.FanOutTally;
+import com.ghfetcher.metrics.UpstreamWaitTracker;
+import io.micrometer.observation.contextpropagation.ObservationThreadLocalAccessor;
+import reactor.core.publisher.Flux;
+import reactor.util.context.Context;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * Deduplicates concurrent executions per key: subscribers arriving while an execution for the same key is in
+ * flight share its upstream subscription and receive all of its signals. The execution is cancelled only once
+ * every subscriber has cancelled.
+ * <p>
+ * The shared execution does not run as part of the request that happened to start it: it gets no trace parent and
+ * an {@link UpstreamWaitTracker} of its own, which the tracker of every subscriber follows while subscribed, and a
+ * {@link FanOutTally} of its own, which is added to every subscriber's tally once it is done with it. Only the
+ * {@link com.ghfetcher.ratelimit.RateLimitScheduler#FAIRNESS_KEY fairness key} is taken from the first subscriber;
+ * executions are keyed per user, so that is the user's own queue or the background refresh one.
+ */
+final class SingleFlight<K, T> {
+
+    private final ConcurrentMap<K, Flight<T>> inFlight = new ConcurrentHashMap<>();
+
+    Flux<T> execute(final K key, final Supplier<Flux<T>> execution) {
+        return Flux.deferContextual(context -> {
+            Flight<T> flight = inFlight.computeIfAbsent(key, k -> share(k, execution));
+            Flux<T> signals = flight.signals();
+            if (context.hasKey(FanOutTally.CONTEXT_KEY)) {
+                // before the terminal signal travels on, so the subscriber reads complete counts when it finishes
+                FanOutTally tally = context.get(FanOutTally.CONTEXT_KEY);
+                signals = signals
+                        .doOnTerminate(() -> tally.add(flight.fanOut()))
+                        .doOnCancel(() -> tally.add(flight.fanOut()));
+            }
+            if (!context.hasKey(UpstreamWaitTracker.CONTEXT_KEY)) {
+                return signals;
+            }
+            UpstreamWaitTracker tracker = context.get(UpstreamWaitTracker.CONTEXT_KEY);
+            return signals
+                    .doOnSubscribe(subscription -> flight.upstreamWait().follow(tracker))
+                    .doFinally(signal -> flight.upstreamWait().unfollow(tracker));
+        });
+    }
+
+    boolean isInFlight(final K key) {
+        return inFlight.containsKey(key);
+    }
+
+    int inFlightCount() {
+        return inFlight.size();
+    }
+
+    private Flight<T> share(final K key, final Supplier<Flux<T>> execution) {
+        UpstreamWaitTracker upstreamWait = new UpstreamWaitTracker();
+        FanOutTally fanOut = new FanOutTally();
+        AtomicReference<Flight<T>> shared = new AtomicReference<>();
+        shared.set(new Flight<>(Flux.defer(execution)
+                .contextWrite(context -> neutral(context, upstreamWait, fanOut))
+                // removed before the terminal signal travels on, so a request made once a subscriber has seen the
+                // end starts a new execution instead of replaying the finished one
+                .doOnTerminate(() -> inFlight.remove(key, shared.get()))
+                .doFinally(signal -> inFlight.remove(key, shared.get()))
+                .replay()
+                .refCount(), upstreamWait, fanOut));
+        return shared.get();
+    }
+
+    private static Context neutral(final Context context, final UpstreamWaitTracker upstreamWait,
+                                   final FanOutTally fanOut) {
+        return context.delete(ObservationThreadLocalAccessor.KEY)
+                .put(UpstreamWaitTracker.CONTEXT_KEY, upstreamWait)
+                .put(FanOutTally.CONTEXT_KEY, fanOut);
+    }
+
+    private record Flight<T>(Flux<T> signals, UpstreamWaitTracker upstreamWait, FanOutTally fanOut) {
+    }
+}
@@ -0,0 +1,80 @@
+package com.ghfetcher.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.function.Function;
+
+/**
+ * Runs one task per input on its own virtual thread as a single unit, the way
+ * {@code StructuredTaskScope.ShutdownOnFailure} does (still a preview API in Java 21): at most {@code concurrency}
+ * tasks run at a time, the first failure interrupts the remaining ones and is rethrown, and no task outlives the call.
+ */
+final class StructuredFanOut {
+
+    private StructuredFanOut() {
+    }
+
+    /**
+     * @return the results in the order of {@code inputs}
+     */
+    static <T, R> List<R> map(final List<T> inputs, final int concurrency, final String threadName,
+                              final Function<T, R> task) {
+        if (inputs.isEmpty()) {
+            return List.of();
+        }
+        Semaphore slots = new Semaphore(Math.max(1, concurrency));
+        ThreadFactory threads = Thread.ofVirtual().name(threadName, 0).factory();
+        try (ExecutorService scope = Executors.newThreadPerTaskExecutor(threads)) {
+            CompletionService<Void> completions = new ExecutorCompletionService<>(scope);
+            List<R> results = new ArrayList<>(Collections.nCopies(inputs.size(), null));
+            for (int i = 0; i < inputs.size(); i++) {
+                int index = i;
+                completions.submit(() -> {
+                    slots.acquire();
+                    try {
+                        results.set(index, task.apply(inputs.get(index)));
+                    } finally {
+                        slots.release();
+                    }
+                    return null;
+                });
+            }
+            try {
+                for (int i = 0; i < inputs.size(); i++) {
+                    awaitNext(completions);
+                }
+            } catch (RuntimeException | Error failure) {
+                scope.shutdownNow();
+                throw failure;
+            }
+            return results;
+        }
+    }
+
+    private static void awaitNext(final CompletionService<Void> completions) {
+        try {
+            Future<Void> completed = completions.take();
+            completed.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for forked calls", ex);
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            if (ex.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw new IllegalStateException(ex.getCause());
+        }
+    }
+}
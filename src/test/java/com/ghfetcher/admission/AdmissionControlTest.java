@@ -0,0 +1,98 @@
+package com.ghfetcher.admission;
+
+import com.ghfetcher.config.GithubProperties;
+import com.ghfetcher.error.ServiceOverloadedException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AdmissionControlTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void should_queue_requests_over_the_limit_and_reject_them_once_the_queue_is_full() {
+        // Given
+        AdmissionControl admissionControl = new AdmissionControl(settings(1, 1, 1, Duration.ofSeconds(5)), meterRegistry);
+        Disposable first = admissionControl.admit(Flux::never).subscribe();
+        Flux<String> second = admissionControl.admit(() -> Flux.just("second"));
+
+        // When
+        StepVerifier.create(second)
+                .expectSubscription()
+                .then(() -> assertThat(admissionControl.queueDepth()).isEqualTo(1))
+                .then(() -> StepVerifier.create(admissionControl.admit(() -> Flux.just("third")))
+                        .expectErrorSatisfies(error -> assertThat(error)
+                                .isInstanceOf(ServiceOverloadedException.class)
+                                .extracting(overloaded -> ((ServiceOverloadedException) overloaded).getRetryAfter())
+                                .isEqualTo(Duration.ofSeconds(1)))
+                        .verify())
+                .then(first::dispose)
+
+                // Then
+                .expectNext("second")
+                .verifyComplete();
+        assertThat(admissionControl.inFlight()).isZero();
+        assertThat(meterRegistry.get("github.admission.rejected").tag("reason", "queue_full").counter().count())
+                .isEqualTo(1);
+    }
+
+    @Test
+    void should_reject_requests_that_wait_longer_than_max_queue_wait() {
+        // Given
+        AdmissionControl admissionControl = new AdmissionControl(settings(1, 1, 10, Duration.ofMillis(100)), meterRegistry);
+        admissionControl.admit(Flux::never).subscribe();
+
+        // When
+        Flux<String> waiting = admissionControl.admit(() -> Flux.just("waiting"));
+
+        // Then
+        StepVerifier.create(waiting)
+                .expectError(ServiceOverloadedException.class)
+                .verify(Duration.ofSeconds(2));
+        assertThat(admissionControl.queueDepth()).isZero();
+        assertThat(admissionControl.inFlight()).isEqualTo(1);
+        assertThat(meterRegistry.get("github.admission.rejected").tag("reason", "queue_timeout").counter().count())
+                .isEqualTo(1);
+    }
+
+    @Test
+    void should_lower_the_limit_while_upstream_latency_rises_and_restore_it_once_it_recovers() {
+        // Given
+        AdmissionControl admissionControl = new AdmissionControl(settings(8, 64, 10, Duration.ofSeconds(1)), meterRegistry);
+        for (int i = 0; i < 40; i++) {
+            admissionControl.acquire().block();
+        }
+        recordLatency(admissionControl, 50, Duration.ofMillis(10));
+
+        // When
+        recordLatency(admissionControl, 30, Duration.ofMillis(100));
+
+        // Then
+        assertThat(admissionControl.limit()).isLessThan(32);
+
+        // When
+        recordLatency(admissionControl, 200, Duration.ofMillis(10));
+
+        // Then
+        assertThat(admissionControl.limit()).isEqualTo(64);
+    }
+
+    private static void recordLatency(final AdmissionControl admissionControl, final int calls, final Duration latency) {
+        for (int i = 0; i < calls; i++) {
+            admissionControl.recordUpstreamLatency(latency.toNanos());
+        }
+    }
+
+    private static GithubProperties.Admission settings(final int minLimit, final int maxLimit, final int maxQueueSize,
+                                                       final Duration maxQueueWait) {
+        return new GithubProperties.Admission(true, maxLimit, minLimit, maxLimit, maxQueueSize, maxQueueWait, 2.0,
+                Duration.ofSeconds(1));
+    }
+}
@@ -0,0 +1,155 @@
+package com.ghfetcher.cache;
+
+import com.ghfetcher.error.UpstreamUnavailableException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ConditionalRequestCacheTest {
+
+    private static final URI BRANCHES_URI = URI.create("http://localhost/repos/testUser/testRepo/branches");
+    private static final String BODY = "[{\"name\":\"main\",\"commit\":{\"sha\":\"sha123\"}}]";
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ConditionalRequestCache cache = new ConditionalRequestCache(10, 1024, 1024, meterRegistry);
+    private final List<ClientRequest> sentRequests = new ArrayList<>();
+
+    @Test
+    void should_revalidate_with_etag_and_serve_body_from_cache_on_304() {
+        // Given
+        ClientRequest request = ClientRequest.create(HttpMethod.GET, BRANCHES_URI).build();
+        exchangeAndReadBody(request, ClientResponse.create(HttpStatus.OK)
+                .header(HttpHeaders.ETAG, "\"v1\"")
+                .body(BODY)
+                .build());
+
+        // When
+        String body = exchangeAndReadBody(request, ClientResponse.create(HttpStatus.NOT_MODIFIED)
+                .header("X-RateLimit-Remaining", "4999")
+                .build());
+
+        // Then
+        assertThat(body).isEqualTo(BODY);
+        assertThat(sentRequests.get(0).headers().getIfNoneMatch()).isEmpty();
+        assertThat(sentRequests.get(1).headers().getIfNoneMatch()).containsExactly("\"v1\"");
+        assertThat(meterRegistry.get("github.cache.requests").tag("result", "miss").counter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("github.cache.requests").tag("result", "hit").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void should_replace_cached_body_when_resource_changed() {
+        // Given
+        ClientRequest request = ClientRequest.create(HttpMethod.GET, BRANCHES_URI).build();
+        exchangeAndReadBody(request, ClientResponse.create(HttpStatus.OK)
+                .header(HttpHeaders.ETAG, "\"v1\"")
+                .body(BODY)
+                .build());
+        exchangeAndReadBody(request, ClientResponse.create(HttpStatus.OK)
+                .header(HttpHeaders.ETAG, "\"v2\"")
+                .body("[]")
+                .build());
+
+        // When
+        String body = exchangeAndReadBody(request, ClientResponse.create(HttpStatus.NOT_MODIFIED).build());
+
+        // Then
+        assertThat(body).isEqualTo("[]");
+        assertThat(sentRequests.get(2).headers().getIfNoneMatch()).containsExactly("\"v2\"");
+        assertThat(meterRegistry.get("github.cache.requests").tag("result", "changed").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void should_evict_least_recently_used_entries_when_full() {
+        // Given
+        ConditionalRequestCache smallCache = new ConditionalRequestCache(1, 1024, 1024, new SimpleMeterRegistry());
+        ClientRequest first = ClientRequest.create(HttpMethod.GET, URI.create("http://localhost/users/first/repos")).build();
+        ClientRequest second = ClientRequest.create(HttpMethod.GET, URI.create("http://localhost/users/second/repos")).build();
+
+        // When
+        for (ClientRequest request : List.of(first, second, first)) {
+            StepVerifier.create(smallCache.filter(request, sent -> {
+                        sentRequests.add(sent);
+                        return Mono.just(ClientResponse.create(HttpStatus.OK)
+                                .header(HttpHeaders.ETAG, "\"v1\"")
+                                .body("[]")
+                                .build());
+                    }).flatMap(response -> response.bodyToMono(String.class)))
+                    .expectNext("[]")
+                    .verifyComplete();
+        }
+
+        // Then
+        assertThat(sentRequests.get(2).headers().getIfNoneMatch()).isEmpty();
+    }
+
+    @Test
+    void should_evict_least_recently_used_entries_when_bodies_exceed_byte_budget() {
+        // Given
+        ConditionalRequestCache smallCache = new ConditionalRequestCache(10, BODY.length() + 10, BODY.length(),
+                new SimpleMeterRegistry());
+        ClientRequest first = ClientRequest.create(HttpMethod.GET, URI.create("http://localhost/users/first/repos")).build();
+        ClientRequest second = ClientRequest.create(HttpMethod.GET, URI.create("http://localhost/users/second/repos")).build();
+        ClientRequest large = ClientRequest.create(HttpMethod.GET, URI.create("http://localhost/users/large/repos")).build();
+
+        // When
+        for (ClientRequest request : List.of(first, second, first, large, large)) {
+            String body = request == large ? BODY + " " : BODY;
+            StepVerifier.create(smallCache.filter(request, sent -> {
+                        sentRequests.add(sent);
+                        return Mono.just(ClientResponse.create(HttpStatus.OK)
+                                .header(HttpHeaders.ETAG, "\"v1\"")
+                                .body(body)
+                                .build());
+                    }).flatMap(response -> response.bodyToMono(String.class)))
+                    .expectNext(body)
+                    .verifyComplete();
+        }
+
+        // Then
+        assertThat(sentRequests.get(2).headers().getIfNoneMatch()).isEmpty();
+        assertThat(sentRequests.get(4).headers().getIfNoneMatch()).isEmpty();
+    }
+
+    @Test
+    void should_serve_cached_body_while_upstream_is_unavailable() {
+        // Given
+        ClientRequest request = ClientRequest.create(HttpMethod.GET, BRANCHES_URI).build();
+        exchangeAndReadBody(request, ClientResponse.create(HttpStatus.OK)
+                .header(HttpHeaders.ETAG, "\"v1\"")
+                .body(BODY)
+                .build());
+
+        // When
+        Mono<String> body = cache.filter(request, sent -> Mono.error(
+                        new UpstreamUnavailableException("GitHub is unavailable", Duration.ofSeconds(30))))
+                .flatMap(response -> response.bodyToMono(String.class));
+
+        // Then
+        StepVerifier.create(body)
+                .expectNext(BODY)
+                .verifyComplete();
+        assertThat(meterRegistry.get("github.cache.requests").tag("result", "stale").counter().count()).isEqualTo(1);
+    }
+
+    private String exchangeAndReadBody(final ClientRequest request, final ClientResponse upstreamResponse) {
+        return cache.filter(request, sent -> {
+                    sentRequests.add(sent);
+                    return Mono.just(upstreamResponse);
+                })
+                .flatMap(response -> response.bodyToMono(String.class))
+                .block();
+    }
+}
@@ -0,0 +1,76 @@
+package com.ghfetcher.cache;
+
+import com.ghfetcher.dto.BranchWithShaDto;
+import com.ghfetcher.dto.RepositoryResponseDto;
+import org.junit.jupiter.api.Test;
+import reactor.test.StepVerifier;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PackedRepositoriesTest {
+
+    private static final String SHA_1 = "0123456789abcdef0123456789abcdef01234567";
+    private static final String SHA_2 = "0000000000000000000000000000000000000000";
+
+    private final NameInterner interner = new NameInterner(100);
+
+    @Test
+    void should_materialize_the_packed_repositories_unchanged() {
+        // Given
+        List<RepositoryResponseDto> repositories = List.of(
+                repository("repo1", new BranchWithShaDto("main", SHA_1), new BranchWithShaDto("develop", SHA_2)),
+                repository("repo2"),
+                repository("repo3", new BranchWithShaDto("main", SHA_2)));
+
+        // When
+        PackedRepositories packed = PackedRepositories.pack("testUser", repositories, interner);
+
+        // Then
+        assertThat(packed.size()).isEqualTo(3);
+        assertThat(packed.branchCount()).isEqualTo(3);
+        assertThat(interner.size()).isEqualTo(2);
+        StepVerifier.create(packed.toFlux())
+                .expectNextSequence(repositories)
+                .verifyComplete();
+    }
+
+    @Test
+    void should_keep_shas_that_cannot_be_packed_as_they_are() {
+        // Given
+        List<BranchWithShaDto> branches = List.of(
+                new BranchWithShaDto("main", SHA_1),
+                new BranchWithShaDto("upper", SHA_1.toUpperCase()),
+                new BranchWithShaDto("short", "sha123"),
+                new BranchWithShaDto("missing", null),
+                new BranchWithShaDto("zero", SHA_2));
+
+        // When
+        PackedBranches packed = PackedBranches.pack(branches, interner);
+
+        // Then
+        assertThat(packed.toList()).isEqualTo(branches);
+    }
+
+    @Test
+    void should_share_repeated_names_across_packed_results() {
+        // Given
+        PackedBranches first = PackedBranches.pack(List.of(new BranchWithShaDto(new String("main"), SHA_1)), interner);
+
+        // When
+        PackedBranches second = PackedBranches.pack(List.of(new BranchWithShaDto(new String("main"), SHA_2)), interner);
+
+        // Then
+        assertThat(second.get(0).name()).isSameAs(first.get(0).name());
+        assertThat(interner.size()).isEqualTo(1);
+    }
+
+    private static RepositoryResponseDto repository(final String name, final BranchWithShaDto... branches) {
+        return RepositoryResponseDto.builder()
+                .ownerLogin("testUser")
+                .repositoryName(name)
+                .branches(List.of(branches))
+                .build();
+    }
+}
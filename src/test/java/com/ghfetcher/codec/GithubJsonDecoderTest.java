@@ -0,0 +1,126 @@
+package com.ghfetcher.codec;
+
+import com.ghfetcher.dto.BranchWithCommitsDto;
+import com.ghfetcher.dto.RepositoryDto;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.codec.DecodingException;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.MediaType;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class GithubJsonDecoderTest {
+
+    private final GithubJsonDecoder decoder = new GithubJsonDecoder();
+
+    @Test
+    void should_decode_only_projected_repository_fields_from_chunks_split_mid_token() {
+        // Given
+        String json = """
+                [{"id":1,"name":"songify","owner":{"login":"rafal-paton","name":"owner-name"},
+                  "license":{"name":"MIT"},"topics":["java","spring"],"fork":false,
+                  "pushed_at":"2024-06-01T07:59:00Z","size":1024},
+                 {"name":"todos","fork":true,"pushed_at":null,"description":"a \\"quoted\\" name"}]""";
+
+        // When
+        Flux<Object> result = decoder.decode(chunks(json, 7), ResolvableType.forClass(RepositoryDto.class),
+                MediaType.APPLICATION_JSON, Map.of());
+
+        // Then
+        StepVerifier.create(result)
+                .expectNext(new RepositoryDto("songify", false, Instant.parse("2024-06-01T07:59:00Z")))
+                .expectNext(new RepositoryDto("todos", true, (Instant) null))
+                .verifyComplete();
+    }
+
+    @Test
+    void should_take_branch_sha_from_nested_commit_object() {
+        // Given
+        String json = """
+                [{"name":"main","commit":{"sha":"123456789","url":"https://api.github.com/commits/123456789"},
+                  "protected":true,"protection":{"required_status_checks":{"contexts":["ci"]}}}]""";
+
+        // When
+        Flux<Object> result = decoder.decode(chunks(json, 5), ResolvableType.forClass(BranchWithCommitsDto.class),
+                MediaType.APPLICATION_JSON, Map.of());
+
+        // Then
+        StepVerifier.create(result.cast(BranchWithCommitsDto.class))
+                .assertNext(branch -> {
+                    assertThat(branch.name()).isEqualTo("main");
+                    assertThat(branch.commit().sha()).isEqualTo("123456789");
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    void should_emit_each_element_as_soon_as_it_is_complete() {
+        // Given
+        Flux<DataBuffer> input = Flux.just("[{\"name\":\"first\",\"fork\":false},", "{\"name\":\"second\",", "\"fork\":false}]")
+                .map(chunk -> DefaultDataBufferFactory.sharedInstance.wrap(chunk.getBytes(StandardCharsets.UTF_8)));
+
+        // When
+        Flux<Object> result = decoder.decode(input, ResolvableType.forClass(RepositoryDto.class),
+                MediaType.APPLICATION_JSON, Map.of());
+
+        // Then
+        StepVerifier.create(result.cast(RepositoryDto.class).map(RepositoryDto::name), 1)
+                .expectNext("first")
+                .thenRequest(1)
+                .expectNext("second")
+                .verifyComplete();
+    }
+
+    @Test
+    void should_fail_on_truncated_payload() {
+        // When
+        Flux<Object> result = decoder.decode(chunks("[{\"name\":\"songify\"", 8),
+                ResolvableType.forClass(RepositoryDto.class), MediaType.APPLICATION_JSON, Map.of());
+
+        // Then
+        StepVerifier.create(result)
+                .expectError(DecodingException.class)
+                .verify();
+    }
+
+    @Test
+    void should_fail_with_decoding_error_on_malformed_push_time() {
+        // When
+        Flux<Object> result = decoder.decode(chunks("[{\"name\":\"songify\",\"pushed_at\":\"yesterday\"}]", 8),
+                ResolvableType.forClass(RepositoryDto.class), MediaType.APPLICATION_JSON, Map.of());
+
+        // Then
+        StepVerifier.create(result)
+                .expectError(DecodingException.class)
+                .verify();
+    }
+
+    @Test
+    void should_leave_other_types_to_the_default_decoder() {
+        assertThat(decoder.canDecode(ResolvableType.forClass(RepositoryDto.class),
+                MediaType.parseMediaType("application/json; charset=utf-8"))).isTrue();
+        assertThat(decoder.canDecode(ResolvableType.forClass(String.class), MediaType.APPLICATION_JSON)).isFalse();
+        assertThat(decoder.canDecode(ResolvableType.forClass(RepositoryDto.class), MediaType.TEXT_PLAIN)).isFalse();
+    }
+
+    private static Flux<DataBuffer> chunks(final String json, final int chunkSize) {
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        List<DataBuffer> buffers = new ArrayList<>();
+        for (int offset = 0; offset < bytes.length; offset += chunkSize) {
+            buffers.add(DefaultDataBufferFactory.sharedInstance.wrap(
+                    Arrays.copyOfRange(bytes, offset, Math.min(bytes.length, offset + chunkSize))));
+        }
+        return Flux.fromIterable(buffers);
+    }
+}
@@ -0,0 +1,173 @@
+package com.ghfetcher.controller;
+
+import com.ghfetcher.dto.RepositoryResponseDto;
+import com.github.tomakehurst.wiremock.WireMockServer;
+import com.github.tomakehurst.wiremock.stubbing.Scenario;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cloud.contract.wiremock.AutoConfigureWireMock;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.containing;
+import static com.github.tomakehurst.wiremock.client.WireMock.equalTo;
+import static com.github.tomakehurst.wiremock.client.WireMock.getRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.matchingJsonPath;
+import static com.github.tomakehurst.wiremock.client.WireMock.moreThanOrExactly;
+import static com.github.tomakehurst.wiremock.client.WireMock.post;
+import static com.github.tomakehurst.wiremock.client.WireMock.postRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlPathMatching;
+import static org.assertj.core.api.Assertions.assertThat;
+
+@ActiveProfiles("test")
+@AutoConfigureWireMock(port = 8081)
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = {"service.github.client=graphql", "service.github.token=test-token"})
+class GithubRestControllerGraphQlTest {
+
+    private final WebTestClient webTestClient;
+    private final WireMockServer wireMockServer;
+
+    @Autowired
+    public GithubRestControllerGraphQlTest(WebTestClient webTestClient, WireMockServer wireMockServer) {
+        this.webTestClient = webTestClient;
+        this.wireMockServer = wireMockServer;
+    }
+
+    @Test
+    void should_return_repositories_with_branches_resolved_through_graphql() {
+        wireMockServer.stubFor(post(urlEqualTo("/graphql"))
+                .withHeader(HttpHeaders.AUTHORIZATION, equalTo("Bearer test-token"))
+                .withRequestBody(matchingJsonPath("$.variables.login", equalTo("rafal-paton")))
+                .willReturn(aResponse()
+                        .withHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                        .withBodyFile("graphql-repositories.json")
+                ));
+
+        wireMockServer.stubFor(post(urlEqualTo("/graphql"))
+                .withRequestBody(matchingJsonPath("$.variables.name", equalTo("songify")))
+                .withRequestBody(matchingJsonPath("$.variables.cursor", equalTo("MQ")))
+                .willReturn(aResponse()
+                        .withHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                        .withBodyFile("graphql-refs.json")
+                ));
+
+        webTestClient.get()
+                .uri("/api/github/rafal-paton")
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus().isEqualTo(200)
+                .expectBodyList(RepositoryResponseDto.class)
+                .hasSize(1)
+                .value(repo -> {
+                    RepositoryResponseDto repository = repo.get(0);
+                    assertThat(repository.repositoryName()).isEqualTo("songify");
+                    assertThat(repository.ownerLogin()).isEqualTo("rafal-paton");
+                    assertThat(repository.branches()).hasSize(2);
+                    assertThat(repository.branches().get(0).name()).isEqualTo("first");
+                    assertThat(repository.branches().get(0).sha()).isEqualTo("123456789");
+                    assertThat(repository.branches().get(1).name()).isEqualTo("second");
+                    assertThat(repository.branches().get(1).sha()).isEqualTo("987654321");
+                });
+
+        wireMockServer.verify(moreThanOrExactly(2), postRequestedFor(urlEqualTo("/graphql")));
+        wireMockServer.verify(0, getRequestedFor(urlPathMatching("/repos/.+/.+/branches")));
+    }
+
+    @Test
+    void should_query_only_the_first_repository_page_without_refs_for_small_names_only_limit() {
+        wireMockServer.stubFor(post(urlEqualTo("/graphql"))
+                .withRequestBody(matchingJsonPath("$.variables.login", equalTo("graphql-names-only-user")))
+                .willReturn(aResponse()
+                        .withHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                        .withBody("""
+                                {"data": {"repositoryOwner": {"repositories": {
+                                  "pageInfo": {"hasNextPage": true, "endCursor": "Mg"},
+                                  "nodes": [{"name": "songify", "isFork": false},
+                                            {"name": "ghfetcher", "isFork": false}]
+                                }}}}""")
+                ));
+
+        webTestClient.get()
+                .uri("/api/github/graphql-names-only-user?namesOnly=true&limit=1")
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus().isEqualTo(200)
+                .expectBody()
+                .jsonPath("$.length()").isEqualTo(1)
+                .jsonPath("$[0].repositoryName").isEqualTo("songify")
+                .jsonPath("$[0].branches").doesNotExist();
+
+        wireMockServer.verify(1, postRequestedFor(urlEqualTo("/graphql"))
+                .withRequestBody(matchingJsonPath("$.variables.login", equalTo("graphql-names-only-user"))));
+        wireMockServer.verify(0, postRequestedFor(urlEqualTo("/graphql"))
+                .withRequestBody(matchingJsonPath("$.variables.login", equalTo("graphql-names-only-user")))
+                .withRequestBody(matchingJsonPath("$.query", containing("refs"))));
+    }
+
+    @Test
+    void should_return_404_user_not_found_when_graphql_owner_is_null() {
+        wireMockServer.stubFor(post(urlEqualTo("/graphql"))
+                .willReturn(aResponse()
+                        .withHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                        .withBody("{\"data\":{\"repositoryOwner\":null},\"errors\":[{\"type\":\"NOT_FOUND\"}]}")
+                ));
+
+        webTestClient.get().uri("/api/github/nonExistentUser")
+                .header("Accept", MediaType.APPLICATION_JSON_VALUE)
+                .exchange()
+                .expectStatus().isNotFound();
+    }
+
+    @Test
+    void should_retry_graphql_query_rejected_as_rate_limited_instead_of_reporting_unknown_user() {
+        wireMockServer.stubFor(post(urlEqualTo("/graphql"))
+                .withRequestBody(matchingJsonPath("$.variables.login", equalTo("graphql-rate-limited-user")))
+                .inScenario("graphql-rate-limit")
+                .whenScenarioStateIs(Scenario.STARTED)
+                .willReturn(aResponse()
+                        .withHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                        .withHeader(HttpHeaders.RETRY_AFTER, "1")
+                        .withBody("{\"data\":{\"repositoryOwner\":null},"
+                                + "\"errors\":[{\"type\":\"RATE_LIMITED\",\"message\":\"API rate limit exceeded\"}]}"))
+                .willSetStateTo("limit-reset"));
+        wireMockServer.stubFor(post(urlEqualTo("/graphql"))
+                .withRequestBody(matchingJsonPath("$.variables.login", equalTo("graphql-rate-limited-user")))
+                .inScenario("graphql-rate-limit")
+                .whenScenarioStateIs("limit-reset")
+                .willReturn(aResponse()
+                        .withHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                        .withBody("{\"data\":{\"repositoryOwner\":{\"repositories\":"
+                                + "{\"pageInfo\":{\"hasNextPage\":false},\"nodes\":[]}}}}")));
+
+        webTestClient.get().uri("/api/github/graphql-rate-limited-user")
+                .header("Accept", MediaType.APPLICATION_JSON_VALUE)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBodyList(RepositoryResponseDto.class)
+                .hasSize(0);
+
+        wireMockServer.verify(2, postRequestedFor(urlEqualTo("/graphql"))
+                .withRequestBody(matchingJsonPath("$.variables.login", equalTo("graphql-rate-limited-user"))));
+    }
+
+    @Test
+    void should_fail_as_upstream_error_instead_of_404_when_graphql_query_fails() {
+        wireMockServer.stubFor(post(urlEqualTo("/graphql"))
+                .withRequestBody(matchingJsonPath("$.variables.login", equalTo("graphql-forbidden-user")))
+                .willReturn(aResponse()
+                        .withHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                        .withBody("{\"data\":{\"repositoryOwner\":null},"
+                                + "\"errors\":[{\"type\":\"FORBIDDEN\",\"message\":\"Bad credentials\"}]}")));
+
+        webTestClient.get().uri("/api/github/graphql-forbidden-user")
+                .header("Accept", MediaType.APPLICATION_JSON_VALUE)
+                .exchange()
+                .expectStatus().is5xxServerError();
+    }
+}
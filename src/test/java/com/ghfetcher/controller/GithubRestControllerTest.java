@@ -1,7 +1,12 @@
 package com.ghfetcher.controller;
 
+import com.ghfetcher.dto.BatchRequestDto;
+import com.ghfetcher.dto.BranchWithShaDto;
 import com.ghfetcher.dto.RepositoryResponseDto;
+import com.ghfetcher.dto.UserRepositoriesResponseDto;
 import com.github.tomakehurst.wiremock.WireMockServer;
+import com.github.tomakehurst.wiremock.client.ResponseDefinitionBuilder;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
@@ -10,10 +15,17 @@ import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.util.List;
+import java.util.stream.IntStream;
 
 import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.equalTo;
 import static com.github.tomakehurst.wiremock.client.WireMock.get;
-import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
+import static com.github.tomakehurst.wiremock.client.WireMock.getRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlPathEqualTo;
 import static com.github.tomakehurst.wiremock.client.WireMock.urlPathMatching;
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -24,11 +36,13 @@ class GithubRestControllerTest {
 
     private final WebTestClient webTestClient;
     private final WireMockServer wireMockServer;
+    private final MeterRegistry meterRegistry;
 
     @Autowired
-    public GithubRestControllerTest(WebTestClient webTestClient, WireMockServer wireMockServer) {
+    public GithubRestControllerTest(WebTestClient webTestClient, WireMockServer wireMockServer, MeterRegistry meterRegistry) {
         this.webTestClient = webTestClient;
         this.wireMockServer = wireMockServer;
+        this.meterRegistry = meterRegistry;
     }
 
     @Test
@@ -69,6 +83,281 @@ class GithubRestControllerTest {
                 });
     }
 
+    @Test
+    void should_follow_link_header_and_return_repositories_from_all_pages() {
+        wireMockServer.stubFor(get(urlPathEqualTo("/users/rafal-paton/repos"))
+                .withQueryParam("page", equalTo("1"))
+                .willReturn(aResponse()
+                        .withHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                        .withHeader(HttpHeaders.LINK,
+                                "<http://localhost:8081/user/1/repos?per_page=100&page=2>; rel=\"next\", "
+                                        + "<http://localhost:8081/user/1/repos?per_page=100&page=2>; rel=\"last\"")
+                        .withBodyFile("repositories.json")
+                ));
+
+        wireMockServer.stubFor(get(urlPathEqualTo("/users/rafal-paton/repos"))
+                .withQueryParam("page", equalTo("2"))
+                .willReturn(aResponse()
+                        .withHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                        .withBodyFile("repositories-page-2.json")
+                ));
+
+        wireMockServer.stubFor(get(urlPathMatching("/repos/.+/.+/branches"))
+                .willReturn(aResponse()
+                        .withHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                        .withBodyFile("branches.json")
+                ));
+
+        webTestClient.get()
+                .uri("/api/github/rafal-paton")
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus().isEqualTo(200)
+                .expectBodyList(RepositoryResponseDto.class)
+                .hasSize(2)
+                .value(repos -> assertThat(repos)
+                        .extracting(RepositoryResponseDto::repositoryName)
+                        .containsExactlyInAnyOrder("songify", "ghfetcher"));
+    }
+
+    @Test
+    void should_fetch_branch_pages_listed_in_last_link_in_order() {
+        stubRepositories("last-link-branches-user");
+        stubBranchPage("last-link-branches-user", 1, 3,
+                "<http://localhost:8081/repositories/1/branches?per_page=100&page=2>; rel=\"next\", "
+                        + "<http://localhost:8081/repositories/1/branches?per_page=100&page=3>; rel=\"last\"");
+        stubBranchPage("last-link-branches-user", 2, 3, null);
+        stubBranchPage("last-link-branches-user", 3, 3, null);
+
+        webTestClient.get()
+                .uri("/api/github/last-link-branches-user")
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus().isEqualTo(200)
+                .expectBodyList(RepositoryResponseDto.class)
+                .hasSize(1)
+                .value(repos -> assertThat(repos.get(0).branches())
+                        .extracting(BranchWithShaDto::name)
+                        .containsExactly("page-1-a", "page-1-b", "page-2-a", "page-2-b", "page-3-a", "page-3-b"));
+
+        wireMockServer.verify(3, getRequestedFor(urlPathEqualTo("/repos/last-link-branches-user/songify/branches")));
+    }
+
+    @Test
+    void should_follow_next_links_of_branch_pages_in_order() {
+        stubRepositories("next-link-branches-user");
+        stubBranchPage("next-link-branches-user", 1, 3,
+                "<http://localhost:8081/repositories/1/branches?per_page=100&page=2>; rel=\"next\"");
+        stubBranchPage("next-link-branches-user", 2, 3,
+                "<http://localhost:8081/repositories/1/branches?per_page=100&page=3>; rel=\"next\"");
+        stubBranchPage("next-link-branches-user", 3, 3, null);
+
+        webTestClient.get()
+                .uri("/api/github/next-link-branches-user")
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus().isEqualTo(200)
+                .expectBodyList(RepositoryResponseDto.class)
+                .hasSize(1)
+                .value(repos -> assertThat(repos.get(0).branches())
+                        .extracting(BranchWithShaDto::name)
+                        .containsExactly("page-1-a", "page-1-b", "page-2-a", "page-2-b", "page-3-a", "page-3-b"));
+
+        wireMockServer.verify(3, getRequestedFor(urlPathEqualTo("/repos/next-link-branches-user/songify/branches")));
+    }
+
+    @Test
+    void should_request_only_the_branch_pages_needed_for_max_branches() {
+        stubRepositories("max-branches-user");
+        stubBranchPage("max-branches-user", 1, 3,
+                "<http://localhost:8081/repositories/1/branches?per_page=100&page=2>; rel=\"next\", "
+                        + "<http://localhost:8081/repositories/1/branches?per_page=100&page=3>; rel=\"last\"");
+        stubBranchPage("max-branches-user", 2, 3, null);
+        stubBranchPage("max-branches-user", 3, 3, null);
+
+        webTestClient.get()
+                .uri("/api/github/max-branches-user?maxBranches=2")
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus().isEqualTo(200)
+                .expectBodyList(RepositoryResponseDto.class)
+                .hasSize(1)
+                .value(repos -> assertThat(repos.get(0).branches())
+                        .extracting(BranchWithShaDto::name)
+                        .containsExactly("page-1-a", "page-1-b"));
+
+        wireMockServer.verify(1, getRequestedFor(urlPathEqualTo("/repos/max-branches-user/songify/branches")));
+    }
+
+    @Test
+    void should_stream_repositories_as_ndjson() {
+        stubRepositoriesWithBranches();
+
+        Flux<RepositoryResponseDto> body = webTestClient.get()
+                .uri("/api/github/rafal-paton")
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus().isEqualTo(200)
+                .expectHeader().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON)
+                .returnResult(RepositoryResponseDto.class)
+                .getResponseBody();
+
+        StepVerifier.create(body)
+                .assertNext(repository -> {
+                    assertThat(repository.repositoryName()).isEqualTo("songify");
+                    assertThat(repository.branches()).hasSize(2);
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    void should_stream_repositories_as_server_sent_events() {
+        stubRepositoriesWithBranches();
+
+        Flux<RepositoryResponseDto> body = webTestClient.get()
+                .uri("/api/github/rafal-paton")
+                .accept(MediaType.TEXT_EVENT_STREAM)
+                .exchange()
+                .expectStatus().isEqualTo(200)
+                .expectHeader().contentTypeCompatibleWith(MediaType.TEXT_EVENT_STREAM)
+                .returnResult(RepositoryResponseDto.class)
+                .getResponseBody();
+
+        StepVerifier.create(body)
+                .assertNext(repository -> {
+                    assertThat(repository.repositoryName()).isEqualTo("songify");
+                    assertThat(repository.ownerLogin()).isEqualTo("rafal-paton");
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    void should_record_upstream_call_and_fan_out_metrics() {
+        stubRepositoriesWithBranches();
+        double forksFilteredBefore = meterRegistry.counter("github.fanout.forks.filtered").count();
+
+        webTestClient.get()
+                .uri("/api/github/metrics-user")
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus().isEqualTo(200);
+
+        assertThat(meterRegistry.get("github.upstream.requests")
+                .tag("endpoint", "/repos/{userName}/{repoName}/branches")
+                .tag("status", "200")
+                .timer().count()).isPositive();
+        assertThat(meterRegistry.get("github.upstream.response.bytes")
+                .tag("endpoint", "/users/{userName}/repos")
+                .summary().totalAmount()).isPositive();
+        assertThat(meterRegistry.counter("github.fanout.forks.filtered").count()).isEqualTo(forksFilteredBefore + 1);
+        assertThat(meterRegistry.get("github.request.phase").tag("phase", "upstream").timer().count()).isPositive();
+    }
+
+    @Test
+    void should_return_only_repository_names_without_calling_branches_endpoint() {
+        stubRepositoriesWithBranches();
+
+        webTestClient.get()
+                .uri("/api/github/names-only-user?namesOnly=true&limit=1")
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus().isEqualTo(200)
+                .expectBody()
+                .jsonPath("$.length()").isEqualTo(1)
+                .jsonPath("$[0].repositoryName").isEqualTo("songify")
+                .jsonPath("$[0].branches").doesNotExist();
+
+        wireMockServer.verify(0, getRequestedFor(urlPathMatching("/repos/names-only-user/.+/branches")));
+    }
+
+    @Test
+    void should_return_400_for_negative_limit() {
+        webTestClient.get()
+                .uri("/api/github/rafal-paton?limit=-1")
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus().isEqualTo(400)
+                .expectBody()
+                .jsonPath("$.status").isEqualTo(400)
+                .jsonPath("$.message").isEqualTo("limit must not be negative");
+    }
+
+    @Test
+    void should_resolve_batch_of_users_and_report_unknown_users_inline() {
+        stubRepositoriesWithBranches();
+        wireMockServer.stubFor(get(urlPathEqualTo("/users/missingUser/repos"))
+                .willReturn(aResponse()
+                        .withStatus(404)));
+
+        webTestClient.post()
+                .uri("/api/github/batch")
+                .accept(MediaType.APPLICATION_JSON)
+                .bodyValue(new BatchRequestDto(List.of("rafal-paton", "missingUser", "rafal-paton", " ")))
+                .exchange()
+                .expectStatus().isEqualTo(200)
+                .expectBodyList(UserRepositoriesResponseDto.class)
+                .value(results -> {
+                    assertThat(results).extracting(UserRepositoriesResponseDto::userName)
+                            .containsExactlyInAnyOrder("rafal-paton", "missingUser");
+                    assertThat(results).filteredOn(result -> result.userName().equals("rafal-paton"))
+                            .singleElement()
+                            .satisfies(result -> {
+                                assertThat(result.error()).isNull();
+                                assertThat(result.repositories()).extracting(RepositoryResponseDto::repositoryName)
+                                        .containsExactly("songify");
+                            });
+                    assertThat(results).filteredOn(result -> result.userName().equals("missingUser"))
+                            .singleElement()
+                            .satisfies(result -> {
+                                assertThat(result.repositories()).isNull();
+                                assertThat(result.error().status()).isEqualTo(404);
+                            });
+                });
+    }
+
+    @Test
+    void should_report_user_failing_upstream_inline_instead_of_failing_the_batch() {
+        stubRepositoriesWithBranches();
+        wireMockServer.stubFor(get(urlPathEqualTo("/users/brokenUser/repos"))
+                .willReturn(aResponse()
+                        .withStatus(500)));
+
+        webTestClient.post()
+                .uri("/api/github/batch")
+                .accept(MediaType.APPLICATION_JSON)
+                .bodyValue(new BatchRequestDto(List.of("rafal-paton", "brokenUser")))
+                .exchange()
+                .expectStatus().isEqualTo(200)
+                .expectBodyList(UserRepositoriesResponseDto.class)
+                .value(results -> {
+                    assertThat(results).filteredOn(result -> result.userName().equals("rafal-paton"))
+                            .singleElement()
+                            .satisfies(result -> assertThat(result.repositories())
+                                    .extracting(RepositoryResponseDto::repositoryName)
+                                    .containsExactly("songify"));
+                    assertThat(results).filteredOn(result -> result.userName().equals("brokenUser"))
+                            .singleElement()
+                            .satisfies(result -> {
+                                assertThat(result.repositories()).isNull();
+                                assertThat(result.error().status()).isEqualTo(502);
+                            });
+                });
+    }
+
+    @Test
+    void should_return_400_for_batch_over_the_user_limit() {
+        List<String> userNames = IntStream.range(0, 101).mapToObj(index -> "user-" + index).toList();
+
+        webTestClient.post()
+                .uri("/api/github/batch")
+                .accept(MediaType.APPLICATION_JSON)
+                .bodyValue(new BatchRequestDto(userNames))
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody()
+                .jsonPath("$.status").isEqualTo(400);
+    }
+
     @Test
     void should_return_406_not_acceptable_for_wrong_accept_header() {
         webTestClient.get().uri("/api/github/testUser")
@@ -78,12 +367,13 @@ class GithubRestControllerTest {
                 .expectHeader().contentType(MediaType.APPLICATION_JSON)
                 .expectBody()
                 .jsonPath("$.status").isEqualTo(406)
-                .jsonPath("$.message").isEqualTo("Wrong header 'accept'. Only JSON is acceptable.");
+                .jsonPath("$.message").isEqualTo("Wrong header 'accept'. "
+                        + "Acceptable media types: application/json, application/x-ndjson, text/event-stream.");
     }
 
     @Test
     void should_return_404_user_not_found_for_non_existent_user() {
-        wireMockServer.stubFor(get(urlEqualTo("/users/nonExistentUser/repos"))
+        wireMockServer.stubFor(get(urlPathEqualTo("/users/nonExistentUser/repos"))
                 .willReturn(aResponse()
                         .withStatus(404)));
 
@@ -139,4 +429,43 @@ class GithubRestControllerTest {
 
         assertThat(elapsedTime).isLessThan(400);
     }
-}
\ No newline at end of file
+
+    private void stubRepositories(final String userName) {
+        wireMockServer.stubFor(get(urlPathEqualTo("/users/" + userName + "/repos"))
+                .willReturn(aResponse()
+                        .withHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                        .withBodyFile("repositories.json")
+                ));
+    }
+
+    private void stubBranchPage(final String userName, final int page, final int lastPage, final String link) {
+        ResponseDefinitionBuilder response = aResponse()
+                .withHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                .withFixedDelay((lastPage - page) * 50)
+                .withBody("""
+                        [
+                          {"name": "page-%1$d-a", "commit": {"sha": "%1$d0"}},
+                          {"name": "page-%1$d-b", "commit": {"sha": "%1$d1"}}
+                        ]""".formatted(page));
+        if (link != null) {
+            response.withHeader(HttpHeaders.LINK, link);
+        }
+        wireMockServer.stubFor(get(urlPathEqualTo("/repos/" + userName + "/songify/branches"))
+                .withQueryParam("page", equalTo(String.valueOf(page)))
+                .willReturn(response));
+    }
+
+    private void stubRepositoriesWithBranches() {
+        wireMockServer.stubFor(get(urlPathMatching("/users/.+/repos"))
+                .willReturn(aResponse()
+                        .withHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                        .withBodyFile("repositories.json")
+                ));
+
+        wireMockServer.stubFor(get(urlPathMatching("/repos/.+/.+/branches"))
+                .willReturn(aResponse()
+                        .withHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                        .withBodyFile("branches.json")
+                ));
+    }
+}
@@ -0,0 +1,104 @@
+package com.ghfetcher.controller;
+
+import com.ghfetcher.dto.RepositoryResponseDto;
+import com.github.tomakehurst.wiremock.WireMockServer;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cloud.contract.wiremock.AutoConfigureWireMock;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.equalTo;
+import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.getRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlPathEqualTo;
+import static org.assertj.core.api.Assertions.assertThat;
+
+@ActiveProfiles("test")
+@AutoConfigureWireMock(port = 8081)
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = {"service.github.client=virtual-threads", "service.github.token=test-token"})
+class GithubRestControllerVirtualThreadTest {
+
+    private final WebTestClient webTestClient;
+    private final WireMockServer wireMockServer;
+
+    @Autowired
+    public GithubRestControllerVirtualThreadTest(WebTestClient webTestClient, WireMockServer wireMockServer) {
+        this.webTestClient = webTestClient;
+        this.wireMockServer = wireMockServer;
+    }
+
+    @Test
+    void should_return_repositories_with_branches_fetched_on_virtual_threads() {
+        stubRepositoriesWithBranches("virtual-thread-user");
+
+        webTestClient.get()
+                .uri("/api/github/virtual-thread-user")
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus().isEqualTo(200)
+                .expectBodyList(RepositoryResponseDto.class)
+                .hasSize(1)
+                .value(repo -> {
+                    RepositoryResponseDto repository = repo.get(0);
+                    assertThat(repository.repositoryName()).isEqualTo("songify");
+                    assertThat(repository.ownerLogin()).isEqualTo("virtual-thread-user");
+                    assertThat(repository.branches()).hasSize(2);
+                    assertThat(repository.branches().get(0).name()).isEqualTo("first");
+                    assertThat(repository.branches().get(0).sha()).isEqualTo("123456789");
+                    assertThat(repository.branches().get(1).name()).isEqualTo("second");
+                    assertThat(repository.branches().get(1).sha()).isEqualTo("987654321");
+                });
+
+        wireMockServer.verify(1, getRequestedFor(urlPathEqualTo("/users/virtual-thread-user/repos"))
+                .withHeader(HttpHeaders.AUTHORIZATION, equalTo("Bearer test-token")));
+        wireMockServer.verify(0, getRequestedFor(urlPathEqualTo("/repos/virtual-thread-user/todos/branches")));
+    }
+
+    @Test
+    void should_apply_query_to_repositories_listed_page_by_page() {
+        stubRepositoriesWithBranches("virtual-thread-query-user");
+
+        webTestClient.get()
+                .uri("/api/github/virtual-thread-query-user?maxBranches=1")
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus().isEqualTo(200)
+                .expectBodyList(RepositoryResponseDto.class)
+                .hasSize(1)
+                .value(repo -> assertThat(repo.get(0).branches())
+                        .singleElement()
+                        .satisfies(branch -> assertThat(branch.name()).isEqualTo("first")));
+    }
+
+    @Test
+    void should_return_404_user_not_found_for_non_existent_user() {
+        wireMockServer.stubFor(get(urlPathEqualTo("/users/virtual-thread-missing-user/repos"))
+                .willReturn(aResponse()
+                        .withStatus(404)));
+
+        webTestClient.get().uri("/api/github/virtual-thread-missing-user")
+                .header("Accept", MediaType.APPLICATION_JSON_VALUE)
+                .exchange()
+                .expectStatus().isNotFound();
+    }
+
+    private void stubRepositoriesWithBranches(final String userName) {
+        wireMockServer.stubFor(get(urlPathEqualTo("/users/" + userName + "/repos"))
+                .willReturn(aResponse()
+                        .withHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                        .withBodyFile("repositories.json")
+                ));
+
+        wireMockServer.stubFor(get(urlPathEqualTo("/repos/" + userName + "/songify/branches"))
+                .willReturn(aResponse()
+                        .withHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                        .withBodyFile("branches.json")
+                ));
+    }
+}
@@ -0,0 +1,161 @@
+package com.ghfetcher.persistence;
+
+import com.ghfetcher.config.GithubProperties;
+import com.ghfetcher.dto.BranchWithShaDto;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FileSnapshotStoreTest {
+
+    private static final String SHA = "bb74ac9e794bddf86679714ba80c4d3c2dcd2881";
+
+    @TempDir
+    private Path directory;
+
+    @Test
+    void should_load_snapshots_written_before_restart_with_shas_as_raw_bytes() throws IOException {
+        // Given
+        StoredUser user = storedUser("rafal-paton", "songify", SHA);
+        try (FileSnapshotStore store = openStore()) {
+            store.save(user);
+            store.awaitPendingOperations();
+        }
+
+        // When
+        try (FileSnapshotStore restarted = openStore()) {
+            restarted.awaitPendingOperations();
+
+            // Then
+            assertThat(restarted.load("rafal-paton").block()).isEqualTo(user);
+            assertThat(restarted.load("unknown").block()).isNull();
+        }
+        assertThat(new String(Files.readAllBytes(snapshotFile()), StandardCharsets.ISO_8859_1)).doesNotContain(SHA);
+    }
+
+    @Test
+    void should_keep_non_hex_shas_and_missing_push_times() {
+        // Given
+        StoredUser user = new StoredUser("octocat", Instant.now().truncatedTo(ChronoUnit.MILLIS), List.of(
+                new StoredUser.Repository("hello-world", null, List.of(
+                        new BranchWithShaDto("main", "not-a-sha"), new BranchWithShaDto("gone", null)))));
+
+        // When
+        try (FileSnapshotStore store = openStore()) {
+            store.save(user);
+            store.awaitPendingOperations();
+
+            // Then
+            assertThat(store.load("octocat").block()).isEqualTo(user);
+        }
+    }
+
+    @Test
+    void should_truncate_torn_record_at_the_end_of_the_file() throws IOException {
+        // Given
+        StoredUser user = storedUser("rafal-paton", "songify", SHA);
+        try (FileSnapshotStore store = openStore()) {
+            store.save(user);
+            store.awaitPendingOperations();
+        }
+        long intactSize = Files.size(snapshotFile());
+        Files.write(snapshotFile(), new byte[]{0, 0, 0, 42, 1, 2, 3}, StandardOpenOption.APPEND);
+
+        // When
+        try (FileSnapshotStore restarted = openStore()) {
+            restarted.awaitPendingOperations();
+
+            // Then
+            assertThat(restarted.load("rafal-paton").block()).isEqualTo(user);
+            assertThat(restarted.fileSize()).isEqualTo(intactSize);
+        }
+    }
+
+    @Test
+    void should_wait_for_the_startup_scan_instead_of_missing_stored_users() {
+        // Given
+        StoredUser user = storedUser("rafal-paton", "songify", SHA);
+        try (FileSnapshotStore store = openStore()) {
+            store.save(user);
+            store.awaitPendingOperations();
+        }
+
+        // When
+        try (FileSnapshotStore restarted = openStore()) {
+
+            // Then
+            assertThat(restarted.load("rafal-paton").block()).isEqualTo(user);
+        }
+    }
+
+    @Test
+    void should_move_unreadable_file_aside_instead_of_overwriting_it() throws IOException {
+        // Given
+        byte[] unreadable = "a snapshot file of another version".getBytes(StandardCharsets.ISO_8859_1);
+        Files.write(snapshotFile(), unreadable);
+        StoredUser user = storedUser("rafal-paton", "songify", SHA);
+
+        // When
+        try (FileSnapshotStore store = openStore()) {
+            store.save(user);
+            store.awaitPendingOperations();
+
+            // Then
+            assertThat(store.load("rafal-paton").block()).isEqualTo(user);
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            assertThat(files.map(file -> file.getFileName().toString())
+                    .filter(fileName -> fileName.startsWith("ghfetcher.snapshots.unreadable-")))
+                    .singleElement()
+                    .satisfies(aside -> assertThat(Files.readAllBytes(directory.resolve(aside))).isEqualTo(unreadable));
+        }
+    }
+
+    @Test
+    void should_drop_superseded_records_on_compaction() {
+        try (FileSnapshotStore store = openStore()) {
+            // Given
+            for (int i = 0; i < 10; i++) {
+                store.save(storedUser("rafal-paton", "repo-" + i, SHA));
+            }
+            store.awaitPendingOperations();
+            long sizeBefore = store.fileSize();
+
+            // When
+            store.compactNow();
+
+            // Then
+            assertThat(store.fileSize()).isLessThan(sizeBefore / 5);
+            assertThat(store.load("rafal-paton").block().repositories())
+                    .extracting(StoredUser.Repository::name)
+                    .containsExactly("repo-9");
+        }
+    }
+
+    private FileSnapshotStore openStore() {
+        return new FileSnapshotStore(new GithubProperties.Persistence(true, snapshotFile().toString(),
+                Duration.ofHours(1), Duration.ofDays(7)), new SimpleMeterRegistry());
+    }
+
+    private Path snapshotFile() {
+        return directory.resolve("ghfetcher.snapshots");
+    }
+
+    private static StoredUser storedUser(final String userName, final String repositoryName, final String sha) {
+        return new StoredUser(userName, Instant.now().truncatedTo(ChronoUnit.MILLIS), List.of(new StoredUser.Repository(
+                repositoryName, Instant.parse("2024-06-01T07:59:00Z"), List.of(new BranchWithShaDto("main", sha)))));
+    }
+}
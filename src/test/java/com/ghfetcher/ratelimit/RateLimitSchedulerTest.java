@@ -0,0 +1,216 @@
+package com.ghfetcher.ratelimit;
+
+import com.ghfetcher.config.GithubProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.net.URI;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RateLimitSchedulerTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final RateLimitScheduler scheduler = new RateLimitScheduler(
+            new GithubProperties.RateLimit(32, 8, 500, 3), meterRegistry);
+
+    @Test
+    void should_shrink_concurrency_when_remaining_budget_drops_below_low_watermark() {
+        // When
+        scheduler.record(HttpStatus.OK, rateLimitHeaders(100, Instant.now().plusSeconds(600)));
+
+        // Then
+        assertThat(scheduler.remainingBudget()).isEqualTo(100);
+        assertThat(scheduler.concurrencyLimit()).isEqualTo(6);
+        assertThat(scheduler.fanOutConcurrency()).isEqualTo(6);
+    }
+
+    @Test
+    void should_queue_calls_over_the_concurrency_limit_until_a_permit_is_released() {
+        // Given
+        RateLimitScheduler singlePermitScheduler = new RateLimitScheduler(
+                new GithubProperties.RateLimit(1, 1, 500, 3), new SimpleMeterRegistry());
+        RateLimitScheduler.Permit first = singlePermitScheduler.acquire().block();
+
+        // When
+        Mono<RateLimitScheduler.Permit> second = singlePermitScheduler.acquire();
+
+        // Then
+        StepVerifier.create(second)
+                .expectSubscription()
+                .then(() -> assertThat(singlePermitScheduler.queueDepth()).isEqualTo(1))
+                .expectNoEvent(Duration.ofMillis(100))
+                .then(first::release)
+                .expectNextCount(1)
+                .verifyComplete();
+    }
+
+    @Test
+    void should_hold_the_permit_until_the_response_body_is_consumed() {
+        // Given
+        RateLimitScheduler singlePermitScheduler = new RateLimitScheduler(
+                new GithubProperties.RateLimit(1, 1, 500, 3), new SimpleMeterRegistry());
+        ClientRequest request = ClientRequest.create(HttpMethod.GET, URI.create("http://localhost/users/testUser/repos"))
+                .build();
+        ClientResponse first = singlePermitScheduler.filter(request,
+                sent -> Mono.just(ClientResponse.create(HttpStatus.OK).body("[]").build())).block();
+
+        // When
+        Mono<ClientResponse> second = singlePermitScheduler.filter(request,
+                sent -> Mono.just(ClientResponse.create(HttpStatus.OK).build()));
+
+        // Then
+        StepVerifier.create(second)
+                .expectSubscription()
+                .then(() -> assertThat(singlePermitScheduler.queueDepth()).isEqualTo(1))
+                .expectNoEvent(Duration.ofMillis(100))
+                .then(() -> assertThat(first.bodyToMono(String.class).block()).isEqualTo("[]"))
+                .assertNext(response -> assertThat(singlePermitScheduler.inFlight()).isEqualTo(1))
+                .verifyComplete();
+        assertThat(singlePermitScheduler.queueDepth()).isZero();
+    }
+
+    @Test
+    void should_hand_out_permits_round_robin_across_fairness_keys() {
+        // Given
+        RateLimitScheduler singlePermitScheduler = new RateLimitScheduler(
+                new GithubProperties.RateLimit(1, 1, 500, 3), new SimpleMeterRegistry());
+        RateLimitScheduler.Permit blocker = singlePermitScheduler.acquire("heavyUser").block();
+        List<String> grantOrder = new CopyOnWriteArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            singlePermitScheduler.acquire("heavyUser").subscribe(permit -> {
+                grantOrder.add("heavyUser");
+                permit.release();
+            });
+        }
+        singlePermitScheduler.acquire("lightUser").subscribe(permit -> {
+            grantOrder.add("lightUser");
+            permit.release();
+        });
+
+        // When
+        blocker.release();
+
+        // Then
+        assertThat(grantOrder).containsExactly("heavyUser", "lightUser", "heavyUser", "heavyUser");
+        assertThat(singlePermitScheduler.queueDepth()).isZero();
+    }
+
+    @Test
+    void should_hold_calls_until_reset_when_budget_is_exhausted() {
+        // Given
+        scheduler.record(HttpStatus.OK, rateLimitHeaders(0, Instant.now().plusSeconds(2)));
+
+        // When
+        Mono<RateLimitScheduler.Permit> permit = scheduler.acquire();
+
+        // Then
+        StepVerifier.create(permit)
+                .expectSubscription()
+                .expectNoEvent(Duration.ofMillis(200))
+                .expectNextCount(1)
+                .expectComplete()
+                .verify(Duration.ofSeconds(4));
+    }
+
+    @Test
+    void should_retry_after_rate_limited_response_instead_of_failing() {
+        // Given
+        AtomicInteger calls = new AtomicInteger();
+        ClientRequest request = ClientRequest.create(HttpMethod.GET, URI.create("http://localhost/users/testUser/repos")).build();
+
+        // When
+        Mono<ClientResponse> response = scheduler.filter(request, sent -> calls.incrementAndGet() == 1
+                ? Mono.just(ClientResponse.create(HttpStatus.TOO_MANY_REQUESTS).header(HttpHeaders.RETRY_AFTER, "1").build())
+                : Mono.just(ClientResponse.create(HttpStatus.OK).build()));
+
+        // Then
+        StepVerifier.create(response.flatMap(result -> result.releaseBody().thenReturn(result.statusCode())))
+                .expectNext(HttpStatus.OK)
+                .verifyComplete();
+        assertThat(calls).hasValue(2);
+        assertThat(meterRegistry.get("github.ratelimit.throttled").counter().count()).isEqualTo(1);
+        assertThat(scheduler.inFlight()).isZero();
+    }
+
+    @Test
+    void should_send_calls_with_the_token_that_has_the_most_budget_left() {
+        // Given
+        SimpleMeterRegistry poolMeterRegistry = new SimpleMeterRegistry();
+        RateLimitScheduler pooledScheduler = new RateLimitScheduler(new GithubProperties.RateLimit(32, 8, 500, 3),
+                new TokenPool(List.of("token-a", "token-b"), poolMeterRegistry), poolMeterRegistry);
+        List<String> usedTokens = new CopyOnWriteArrayList<>();
+
+        // When
+        for (int i = 0; i < 4; i++) {
+            pooledScheduler.filter(repositoriesRequest(), sent -> {
+                String authorization = sent.headers().getFirst(HttpHeaders.AUTHORIZATION);
+                usedTokens.add(authorization);
+                long remaining = authorization.endsWith("token-a") ? 10 : 1000;
+                return Mono.just(rateLimitedResponse(HttpStatus.OK, remaining, Instant.now().plusSeconds(600)));
+            }).block();
+        }
+
+        // Then
+        assertThat(usedTokens).containsExactly("Bearer token-a", "Bearer token-b", "Bearer token-b", "Bearer token-b");
+        assertThat(poolMeterRegistry.get("github.ratelimit.token.requests").tag("token", "token-2").counter().count())
+                .isEqualTo(3);
+        assertThat(pooledScheduler.remainingBudget()).isEqualTo(1010);
+    }
+
+    @Test
+    void should_bench_an_exhausted_token_until_its_reset_and_continue_with_the_others() {
+        // Given
+        SimpleMeterRegistry poolMeterRegistry = new SimpleMeterRegistry();
+        RateLimitScheduler pooledScheduler = new RateLimitScheduler(new GithubProperties.RateLimit(32, 8, 500, 3),
+                new TokenPool(List.of("token-a", "token-b"), poolMeterRegistry), poolMeterRegistry);
+        List<String> usedTokens = new CopyOnWriteArrayList<>();
+
+        // When
+        for (int i = 0; i < 3; i++) {
+            pooledScheduler.filter(repositoriesRequest(), sent -> {
+                String authorization = sent.headers().getFirst(HttpHeaders.AUTHORIZATION);
+                usedTokens.add(authorization);
+                return authorization.endsWith("token-a")
+                        ? Mono.just(rateLimitedResponse(HttpStatus.FORBIDDEN, 0, Instant.now().plusSeconds(600)))
+                        : Mono.just(rateLimitedResponse(HttpStatus.OK, 4000, Instant.now().plusSeconds(600)));
+            }).block();
+        }
+
+        // Then
+        assertThat(usedTokens).containsExactly("Bearer token-a", "Bearer token-b", "Bearer token-b", "Bearer token-b");
+        assertThat(poolMeterRegistry.get("github.ratelimit.token.benched").tag("token", "token-1").gauge().value())
+                .isEqualTo(1);
+        assertThat(pooledScheduler.remainingBudget()).isEqualTo(4000);
+        assertThat(poolMeterRegistry.get("github.ratelimit.throttled").counter().count()).isEqualTo(1);
+    }
+
+    private static ClientRequest repositoriesRequest() {
+        return ClientRequest.create(HttpMethod.GET, URI.create("http://localhost/users/testUser/repos")).build();
+    }
+
+    private static ClientResponse rateLimitedResponse(final HttpStatus status, final long remaining, final Instant reset) {
+        return ClientResponse.create(status)
+                .headers(headers -> headers.addAll(rateLimitHeaders(remaining, reset)))
+                .build();
+    }
+
+    private static HttpHeaders rateLimitHeaders(final long remaining, final Instant reset) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(RateLimitScheduler.REMAINING_HEADER, String.valueOf(remaining));
+        headers.set(RateLimitScheduler.RESET_HEADER, String.valueOf(reset.getEpochSecond()));
+        return headers;
+    }
+}
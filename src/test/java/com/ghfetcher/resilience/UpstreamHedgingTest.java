@@ -0,0 +1,157 @@
+package com.ghfetcher.resilience;
+
+import com.ghfetcher.config.GithubProperties;
+import com.ghfetcher.ratelimit.RateLimitScheduler;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class UpstreamHedgingTest {
+
+    private static final ClientRequest REQUEST = ClientRequest.create(HttpMethod.GET,
+            URI.create("http://localhost/repos/testUser/testRepo/branches")).build();
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final RateLimitScheduler rateLimitScheduler = new RateLimitScheduler(
+            new GithubProperties.RateLimit(32, 8, 500, 3), meterRegistry);
+    private final GithubProperties.Resilience settings = new GithubProperties.Resilience(Duration.ofMillis(500), 2,
+            Duration.ofMillis(10), Duration.ofMillis(50), 0.95, Duration.ofMillis(20), 3, Duration.ofMillis(300));
+    private final UpstreamHedging hedging = new UpstreamHedging(settings, rateLimitScheduler, meterRegistry);
+
+    @Test
+    void should_send_a_hedge_when_the_call_is_slower_than_usual_and_take_the_first_response() {
+        // Given
+        for (int i = 0; i < LatencyWindow.MIN_SAMPLES; i++) {
+            hedging.filter(REQUEST, sent -> Mono.just(ClientResponse.create(HttpStatus.OK).build())).block();
+        }
+        AtomicInteger calls = new AtomicInteger();
+
+        // When
+        Mono<ClientResponse> response = hedging.filter(REQUEST, sent -> calls.incrementAndGet() == 1
+                ? Mono.just(ClientResponse.create(HttpStatus.OK).build()).delayElement(Duration.ofMillis(400))
+                : Mono.just(ClientResponse.create(HttpStatus.ACCEPTED).build()));
+
+        // Then
+        StepVerifier.create(response.flatMap(result -> result.releaseBody().thenReturn(result.statusCode())))
+                .expectNext(HttpStatus.ACCEPTED)
+                .expectComplete()
+                .verify(Duration.ofMillis(300));
+        assertThat(calls).hasValue(2);
+        assertThat(meterRegistry.get("github.resilience.hedges").tag("result", "issued").counter().count())
+                .isEqualTo(1);
+        assertThat(rateLimitScheduler.inFlight()).isZero();
+    }
+
+    @Test
+    void should_wait_for_the_hedge_when_the_primary_call_fails_after_it_was_sent() {
+        // Given
+        for (int i = 0; i < LatencyWindow.MIN_SAMPLES; i++) {
+            hedging.filter(REQUEST, sent -> Mono.just(ClientResponse.create(HttpStatus.OK).build())).block();
+        }
+        AtomicInteger calls = new AtomicInteger();
+
+        // When
+        Mono<ClientResponse> response = hedging.filter(REQUEST, sent -> calls.incrementAndGet() == 1
+                ? Mono.delay(Duration.ofMillis(100)).then(Mono.error(new TimeoutException()))
+                : Mono.just(ClientResponse.create(HttpStatus.ACCEPTED).build()).delayElement(Duration.ofMillis(200)));
+
+        // Then
+        StepVerifier.create(response.flatMap(result -> result.releaseBody().thenReturn(result.statusCode())))
+                .expectNext(HttpStatus.ACCEPTED)
+                .expectComplete()
+                .verify(Duration.ofSeconds(1));
+        assertThat(calls).hasValue(2);
+    }
+
+    @Test
+    void should_take_the_primary_response_when_the_hedge_answers_first_with_a_server_error() {
+        // Given
+        for (int i = 0; i < LatencyWindow.MIN_SAMPLES; i++) {
+            hedging.filter(REQUEST, sent -> Mono.just(ClientResponse.create(HttpStatus.OK).build())).block();
+        }
+        AtomicInteger calls = new AtomicInteger();
+
+        // When
+        Mono<ClientResponse> response = hedging.filter(REQUEST, sent -> calls.incrementAndGet() == 1
+                ? Mono.just(ClientResponse.create(HttpStatus.OK).build()).delayElement(Duration.ofMillis(200))
+                : Mono.just(ClientResponse.create(HttpStatus.BAD_GATEWAY).build()));
+
+        // Then
+        StepVerifier.create(response.flatMap(result -> result.releaseBody().thenReturn(result.statusCode())))
+                .expectNext(HttpStatus.OK)
+                .expectComplete()
+                .verify(Duration.ofSeconds(1));
+        assertThat(calls).hasValue(2);
+        assertThat(meterRegistry.get("github.resilience.hedges").tag("result", "won").counter().count()).isZero();
+        assertThat(rateLimitScheduler.inFlight()).isZero();
+    }
+
+    @Test
+    void should_answer_with_the_attempt_failing_last_when_both_fail() {
+        // Given
+        for (int i = 0; i < LatencyWindow.MIN_SAMPLES; i++) {
+            hedging.filter(REQUEST, sent -> Mono.just(ClientResponse.create(HttpStatus.OK).build())).block();
+        }
+        AtomicInteger calls = new AtomicInteger();
+
+        // When
+        Mono<ClientResponse> response = hedging.filter(REQUEST, sent -> calls.incrementAndGet() == 1
+                ? Mono.just(ClientResponse.create(HttpStatus.SERVICE_UNAVAILABLE).build())
+                        .delayElement(Duration.ofMillis(200))
+                : Mono.just(ClientResponse.create(HttpStatus.BAD_GATEWAY).build()));
+
+        // Then
+        StepVerifier.create(response.flatMap(result -> result.releaseBody().thenReturn(result.statusCode())))
+                .expectNext(HttpStatus.SERVICE_UNAVAILABLE)
+                .expectComplete()
+                .verify(Duration.ofSeconds(1));
+        assertThat(calls).hasValue(2);
+        assertThat(rateLimitScheduler.inFlight()).isZero();
+    }
+
+    @Test
+    void should_fail_right_away_when_the_primary_call_fails_before_a_hedge_was_sent() {
+        // Given
+        for (int i = 0; i < LatencyWindow.MIN_SAMPLES; i++) {
+            hedging.filter(REQUEST, sent -> Mono.just(ClientResponse.create(HttpStatus.OK).build())).block();
+        }
+        AtomicInteger calls = new AtomicInteger();
+
+        // When
+        Mono<ClientResponse> response = hedging.filter(REQUEST, sent -> {
+            calls.incrementAndGet();
+            return Mono.error(new IllegalStateException("connection reset"));
+        });
+
+        // Then
+        StepVerifier.create(response)
+                .expectError(IllegalStateException.class)
+                .verify(Duration.ofMillis(100));
+        assertThat(calls).hasValue(1);
+        assertThat(meterRegistry.get("github.resilience.hedges").tag("result", "issued").counter().count()).isZero();
+    }
+
+    @Test
+    void should_not_hedge_before_enough_latencies_are_known_and_time_out_slow_calls() {
+        // When
+        Mono<ClientResponse> response = hedging.filter(REQUEST, sent -> Mono.never());
+
+        // Then
+        StepVerifier.create(response)
+                .expectError(TimeoutException.class)
+                .verify(Duration.ofSeconds(2));
+        assertThat(meterRegistry.get("github.resilience.hedges").tag("result", "issued").counter().count()).isZero();
+    }
+}
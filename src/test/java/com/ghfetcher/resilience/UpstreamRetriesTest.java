@@ -0,0 +1,137 @@
+package com.ghfetcher.resilience;
+
+import com.ghfetcher.config.GithubProperties;
+import com.ghfetcher.error.UpstreamUnavailableException;
+import com.ghfetcher.ratelimit.RateLimitScheduler;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.net.URI;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class UpstreamRetriesTest {
+
+    private static final ClientRequest REQUEST = ClientRequest.create(HttpMethod.GET,
+            URI.create("http://localhost/users/testUser/repos")).build();
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final RateLimitScheduler rateLimitScheduler = new RateLimitScheduler(
+            new GithubProperties.RateLimit(32, 8, 500, 3), meterRegistry);
+    private final GithubProperties.Resilience settings = new GithubProperties.Resilience(Duration.ofSeconds(5), 2,
+            Duration.ofMillis(10), Duration.ofMillis(50), 0.95, Duration.ofMillis(50), 3, Duration.ofMillis(300));
+    private final CircuitBreaker circuitBreaker = new CircuitBreaker(settings.failureThreshold(),
+            settings.openDuration(), meterRegistry);
+    private final UpstreamRetries retries = new UpstreamRetries(settings, rateLimitScheduler, circuitBreaker,
+            meterRegistry);
+    private final AtomicInteger calls = new AtomicInteger();
+
+    @Test
+    void should_retry_server_errors_and_timeouts_until_a_call_succeeds() {
+        // When
+        Mono<ClientResponse> response = retries.filter(REQUEST, sent -> switch (calls.incrementAndGet()) {
+            case 1 -> Mono.just(ClientResponse.create(HttpStatus.BAD_GATEWAY).build());
+            case 2 -> Mono.error(new TimeoutException());
+            default -> Mono.just(ClientResponse.create(HttpStatus.OK).build());
+        });
+
+        // Then
+        StepVerifier.create(response)
+                .assertNext(result -> assertThat(result.statusCode()).isEqualTo(HttpStatus.OK))
+                .verifyComplete();
+        assertThat(calls).hasValue(3);
+        assertThat(meterRegistry.get("github.resilience.retries").tag("result", "issued").counter().count())
+                .isEqualTo(2);
+    }
+
+    @Test
+    void should_not_retry_while_rate_limit_budget_is_low() {
+        // Given
+        HttpHeaders budget = new HttpHeaders();
+        budget.set("X-RateLimit-Remaining", "100");
+        budget.set("X-RateLimit-Reset", String.valueOf(Instant.now().plusSeconds(600).getEpochSecond()));
+        rateLimitScheduler.record(HttpStatus.OK, budget);
+
+        // When
+        Mono<ClientResponse> response = retries.filter(REQUEST, sent -> {
+            calls.incrementAndGet();
+            return Mono.just(ClientResponse.create(HttpStatus.SERVICE_UNAVAILABLE).build());
+        });
+
+        // Then
+        StepVerifier.create(response)
+                .assertNext(result -> assertThat(result.statusCode()).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE))
+                .verifyComplete();
+        assertThat(calls).hasValue(1);
+        assertThat(meterRegistry.get("github.resilience.retries").tag("result", "skipped").counter().count())
+                .isEqualTo(1);
+    }
+
+    @Test
+    void should_fail_fast_while_circuit_is_open_and_close_it_after_a_successful_probe() {
+        // Given
+        retries.filter(REQUEST, sent -> {
+            calls.incrementAndGet();
+            return Mono.just(ClientResponse.create(HttpStatus.INTERNAL_SERVER_ERROR).build());
+        }).block();
+        assertThat(calls).hasValue(3);
+
+        // When
+        Mono<ClientResponse> rejected = retries.filter(REQUEST, sent -> {
+            calls.incrementAndGet();
+            return Mono.just(ClientResponse.create(HttpStatus.OK).build());
+        });
+
+        // Then
+        StepVerifier.create(rejected)
+                .expectErrorSatisfies(error -> assertThat(error)
+                        .isInstanceOf(UpstreamUnavailableException.class)
+                        .extracting(ex -> ((UpstreamUnavailableException) ex).getRetryAfter())
+                        .isNotEqualTo(Duration.ZERO))
+                .verify();
+        assertThat(calls).hasValue(3);
+        assertThat(circuitBreaker.state()).isEqualTo(CircuitBreaker.State.OPEN);
+
+        StepVerifier.create(Mono.delay(settings.openDuration()).then(rejected))
+                .assertNext(result -> assertThat(result.statusCode()).isEqualTo(HttpStatus.OK))
+                .verifyComplete();
+        assertThat(calls).hasValue(4);
+        assertThat(circuitBreaker.state()).isEqualTo(CircuitBreaker.State.CLOSED);
+    }
+
+    @Test
+    void should_let_only_one_probe_through_when_a_call_from_before_the_opening_is_cancelled() {
+        // Given
+        Disposable callFromBeforeOpening = retries.filter(REQUEST, sent -> Mono.never()).subscribe();
+        retries.filter(REQUEST, sent -> Mono.just(ClientResponse.create(HttpStatus.INTERNAL_SERVER_ERROR).build()))
+                .block();
+        Mono.delay(settings.openDuration()).block();
+        Disposable probe = retries.filter(REQUEST, sent -> Mono.never()).subscribe();
+
+        // When
+        callFromBeforeOpening.dispose();
+
+        // Then
+        StepVerifier.create(retries.filter(REQUEST, sent -> {
+                    calls.incrementAndGet();
+                    return Mono.just(ClientResponse.create(HttpStatus.OK).build());
+                }))
+                .expectError(UpstreamUnavailableException.class)
+                .verify();
+        assertThat(calls).hasValue(0);
+        assertThat(circuitBreaker.state()).isEqualTo(CircuitBreaker.State.HALF_OPEN);
+        probe.dispose();
+    }
+}
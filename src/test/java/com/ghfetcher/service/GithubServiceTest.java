@@ -1,21 +1,64 @@
 package com.ghfetcher.service;
 
+import com.ghfetcher.admission.AdmissionControl;
+import com.ghfetcher.config.GithubProperties;
 import com.ghfetcher.dto.BranchWithCommitsDto;
 import com.ghfetcher.dto.BranchWithShaDto;
 import com.ghfetcher.dto.CommitDto;
 import com.ghfetcher.dto.RepositoryDto;
 import com.ghfetcher.dto.RepositoryResponseDto;
+import com.ghfetcher.dto.UserRepositoriesResponseDto;
 import com.ghfetcher.error.UserNotFoundException;
+import com.ghfetcher.metrics.FetchMetrics;
+import com.ghfetcher.metrics.UpstreamWaitTracker;
+import com.ghfetcher.persistence.SnapshotStore;
+import com.ghfetcher.persistence.StoredUser;
+import com.ghfetcher.ratelimit.RateLimitScheduler;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.context.properties.source.MapConfigurationPropertySource;
+import org.springframework.core.env.StandardEnvironment;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.util.UriComponentsBuilder;
+import reactor.core.Disposable;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 import reactor.test.StepVerifier;
 
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.mockito.ArgumentMatchers.anyBoolean;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -25,12 +68,26 @@ class GithubServiceTest {
     @Mock
     private GithubClient githubClient;
 
-    @InjectMocks
     private GithubService githubService;
+    private SimpleMeterRegistry meterRegistry;
+    private RateLimitScheduler rateLimitScheduler;
 
     private static final String TEST_USER = "testUser";
     private static final String TEST_REPO = "testRepo";
     private static final String NON_EXISTENT_USER = "nonExistentUser";
+    private static final int REPOSITORIES_PER_PAGE = 300;
+    private static final int SOURCES_PER_PAGE = 5;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        GithubProperties githubProperties = Binder.get(new StandardEnvironment())
+                .bindOrCreate("service.github", GithubProperties.class);
+        rateLimitScheduler = new RateLimitScheduler(githubProperties.rateLimit(), meterRegistry);
+        githubService = new GithubService(githubClient, rateLimitScheduler, new FetchMetrics(meterRegistry),
+                new AdmissionControl(githubProperties.admission(), meterRegistry), githubProperties,
+                SnapshotStore.DISABLED);
+    }
 
     @Test
     void should_map_branch_with_commitDto_to_branch_with_sha_correctly() {
@@ -130,4 +187,483 @@ class GithubServiceTest {
                 )
                 .verify();
     }
-}
\ No newline at end of file
+
+    @Test
+    void should_share_one_upstream_execution_between_concurrent_requests_for_the_same_user() {
+        // Given
+        AtomicInteger repoRequests = new AtomicInteger();
+        when(githubClient.makeRequestForUserRepos(TEST_USER))
+                .thenReturn(Flux.defer(() -> {
+                    repoRequests.incrementAndGet();
+                    return Flux.just(new RepositoryDto(TEST_REPO, false)).delayElements(Duration.ofMillis(100));
+                }));
+        when(githubClient.makeRequestForBranches(TEST_USER, TEST_REPO))
+                .thenReturn(Flux.just(new BranchWithCommitsDto("main", new CommitDto("sha123"))));
+
+        // When
+        Flux<RepositoryResponseDto> result = Flux.merge(
+                githubService.fetchUserRepositoriesWithBranches(TEST_USER),
+                githubService.fetchUserRepositoriesWithBranches(TEST_USER));
+
+        // Then
+        StepVerifier.create(result)
+                .expectNextCount(2)
+                .verifyComplete();
+        assertThat(repoRequests).hasValue(1);
+    }
+
+    @Test
+    void should_charge_upstream_wait_of_shared_execution_to_every_subscribed_request() {
+        // Given
+        ClientRequest upstreamRequest = ClientRequest.create(HttpMethod.GET,
+                URI.create("http://localhost/users/testUser/repos")).build();
+        when(githubClient.makeRequestForUserRepos(TEST_USER))
+                .thenReturn(UpstreamWaitTracker.FILTER.filter(upstreamRequest,
+                                request -> Mono.just(ClientResponse.create(HttpStatus.OK).body("[]").build())
+                                        .delayElement(Duration.ofMillis(200)))
+                        .flatMap(response -> response.bodyToMono(String.class))
+                        .thenMany(Flux.just(new RepositoryDto(TEST_REPO, false))));
+        when(githubClient.makeRequestForBranches(TEST_USER, TEST_REPO))
+                .thenReturn(Flux.just(new BranchWithCommitsDto("main", new CommitDto("sha123"))));
+
+        // When
+        Flux<RepositoryResponseDto> result = Flux.merge(
+                githubService.fetchUserRepositoriesWithBranches(TEST_USER),
+                githubService.fetchUserRepositoriesWithBranches(TEST_USER));
+
+        // Then
+        StepVerifier.create(result)
+                .expectNextCount(2)
+                .verifyComplete();
+        Timer upstreamPhase = meterRegistry.get("github.request.phase").tag("phase", "upstream").timer();
+        assertThat(upstreamPhase.count()).isEqualTo(2);
+        assertThat(upstreamPhase.totalTime(TimeUnit.MILLISECONDS)).isGreaterThanOrEqualTo(2 * 180);
+    }
+
+    @Test
+    void should_record_fan_out_of_shared_execution_for_every_subscribed_request() {
+        // Given
+        when(githubClient.makeRequestForUserRepos(TEST_USER))
+                .thenReturn(Flux.just(new RepositoryDto(TEST_REPO, false), new RepositoryDto("forkedRepo", true))
+                        .delayElements(Duration.ofMillis(100)));
+        when(githubClient.makeRequestForBranches(TEST_USER, TEST_REPO))
+                .thenReturn(Flux.just(new BranchWithCommitsDto("main", new CommitDto("sha123"))));
+
+        // When
+        Flux<RepositoryResponseDto> result = Flux.merge(
+                githubService.fetchUserRepositoriesWithBranches(TEST_USER),
+                githubService.fetchUserRepositoriesWithBranches(TEST_USER));
+
+        // Then
+        StepVerifier.create(result)
+                .expectNextCount(2)
+                .verifyComplete();
+        DistributionSummary repositories = meterRegistry.get("github.request.fanout")
+                .tag("kind", "repositories").summary();
+        DistributionSummary branchCalls = meterRegistry.get("github.request.fanout")
+                .tag("kind", "branch.calls").summary();
+        assertThat(repositories.count()).isEqualTo(2);
+        assertThat(repositories.max()).isEqualTo(2);
+        assertThat(branchCalls.max()).isEqualTo(1);
+        assertThat(meterRegistry.get("github.fanout.branch.calls").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void should_keep_shared_execution_running_when_one_subscriber_cancels() {
+        // Given
+        AtomicInteger repoRequests = new AtomicInteger();
+        when(githubClient.makeRequestForUserRepos(TEST_USER))
+                .thenReturn(Flux.defer(() -> {
+                    repoRequests.incrementAndGet();
+                    return Flux.just(new RepositoryDto(TEST_REPO, false)).delayElements(Duration.ofMillis(100));
+                }));
+        when(githubClient.makeRequestForBranches(TEST_USER, TEST_REPO))
+                .thenReturn(Flux.just(new BranchWithCommitsDto("main", new CommitDto("sha123"))));
+        Disposable cancelledSubscriber = githubService.fetchUserRepositoriesWithBranches(TEST_USER).subscribe();
+
+        // When
+        Flux<RepositoryResponseDto> result = githubService.fetchUserRepositoriesWithBranches(TEST_USER);
+
+        // Then
+        StepVerifier.create(result)
+                .then(cancelledSubscriber::dispose)
+                .assertNext(repo -> assertThat(repo.repositoryName()).isEqualTo(TEST_REPO))
+                .verifyComplete();
+        assertThat(repoRequests).hasValue(1);
+    }
+
+    @Test
+    void should_reuse_branches_of_repositories_not_pushed_since_last_fetch() {
+        // Given
+        Instant pushedAt = Instant.parse("2024-06-01T07:59:00Z");
+        Instant pushedLater = pushedAt.plusSeconds(60);
+        AtomicInteger branchRequests = new AtomicInteger();
+        when(githubClient.makeRequestForBranches(TEST_USER, TEST_REPO))
+                .thenReturn(Flux.defer(() -> {
+                    branchRequests.incrementAndGet();
+                    return Flux.just(new BranchWithCommitsDto("main", new CommitDto("sha" + branchRequests.get())));
+                }));
+
+        // When
+        RepositoryResponseDto first = githubService.createRepositoryResponseDto(
+                TEST_USER, new RepositoryDto(TEST_REPO, false, pushedAt)).block();
+        RepositoryResponseDto unchanged = githubService.createRepositoryResponseDto(
+                TEST_USER, new RepositoryDto(TEST_REPO, false, pushedAt)).block();
+        RepositoryResponseDto pushed = githubService.createRepositoryResponseDto(
+                TEST_USER, new RepositoryDto(TEST_REPO, false, pushedLater)).block();
+
+        // Then
+        assertThat(branchRequests).hasValue(2);
+        assertThat(first.branches()).extracting(BranchWithShaDto::sha).containsExactly("sha1");
+        assertThat(unchanged.branches()).extracting(BranchWithShaDto::sha).containsExactly("sha1");
+        assertThat(pushed.branches()).extracting(BranchWithShaDto::sha).containsExactly("sha2");
+    }
+
+    @Test
+    void should_serve_hot_user_from_last_snapshot_while_refreshing_in_background() {
+        // Given
+        GithubService refreshingService = serviceWithProperties(Map.of(
+                "service.github.refresh.hot-threshold", "2",
+                "service.github.refresh.refresh-after", "0s"));
+        AtomicInteger repoRequests = new AtomicInteger();
+        when(githubClient.makeRequestForUserRepos(TEST_USER))
+                .thenReturn(Flux.defer(() -> Flux.just(
+                        new RepositoryDto("repo" + repoRequests.incrementAndGet(), false))));
+        when(githubClient.makeRequestForBranches(anyString(), anyString()))
+                .thenReturn(Flux.just(new BranchWithCommitsDto("main", new CommitDto("sha123"))));
+        refreshingService.fetchUserRepositoriesWithBranches(TEST_USER).blockLast();
+        refreshingService.fetchUserRepositoriesWithBranches(TEST_USER).blockLast();
+
+        // When
+        List<RepositoryResponseDto> fromSnapshot = refreshingService.fetchUserRepositoriesWithBranches(TEST_USER)
+                .collectList().block();
+        List<RepositoryResponseDto> afterRefresh = refreshingService.fetchUserRepositoriesWithBranches(TEST_USER)
+                .collectList().block();
+
+        // Then
+        assertThat(fromSnapshot).extracting(RepositoryResponseDto::repositoryName).containsExactly("repo2");
+        assertThat(afterRefresh).extracting(RepositoryResponseDto::repositoryName).containsExactly("repo3");
+        assertThat(meterRegistry.counter("github.refresh.snapshots.served").count()).isEqualTo(2);
+    }
+
+    @Test
+    void should_skip_background_refresh_when_rate_limit_budget_is_low() {
+        // Given
+        GithubService refreshingService = serviceWithProperties(Map.of(
+                "service.github.refresh.hot-threshold", "2",
+                "service.github.refresh.refresh-after", "0s",
+                "service.github.refresh.min-remaining-budget", "100"));
+        AtomicInteger repoRequests = new AtomicInteger();
+        when(githubClient.makeRequestForUserRepos(TEST_USER))
+                .thenReturn(Flux.defer(() -> {
+                    repoRequests.incrementAndGet();
+                    return Flux.just(new RepositoryDto(TEST_REPO, false));
+                }));
+        when(githubClient.makeRequestForBranches(TEST_USER, TEST_REPO))
+                .thenReturn(Flux.just(new BranchWithCommitsDto("main", new CommitDto("sha123"))));
+        refreshingService.fetchUserRepositoriesWithBranches(TEST_USER).blockLast();
+        refreshingService.fetchUserRepositoriesWithBranches(TEST_USER).blockLast();
+        HttpHeaders lowBudget = new HttpHeaders();
+        lowBudget.set("X-RateLimit-Remaining", "10");
+        lowBudget.set("X-RateLimit-Reset", String.valueOf(Instant.now().plusSeconds(600).getEpochSecond()));
+        rateLimitScheduler.record(HttpStatus.OK, lowBudget);
+
+        // When
+        refreshingService.fetchUserRepositoriesWithBranches(TEST_USER).blockLast();
+        refreshingService.fetchUserRepositoriesWithBranches(TEST_USER).blockLast();
+        refreshingService.refreshHotUsers().block();
+
+        // Then
+        assertThat(repoRequests).hasValue(2);
+        assertThat(meterRegistry.counter("github.refresh.runs", "result", "skipped").count()).isEqualTo(2);
+    }
+
+    @Test
+    void should_serve_persisted_snapshot_right_after_restart_and_skip_unchanged_branches_on_refresh() {
+        // Given
+        Instant pushedAt = Instant.parse("2024-06-01T07:59:00Z");
+        StoredUser storedUser = new StoredUser(TEST_USER, Instant.now(), List.of(new StoredUser.Repository(
+                TEST_REPO, pushedAt, List.of(new BranchWithShaDto("main", "sha123")))));
+        List<StoredUser> saved = new ArrayList<>();
+        SnapshotStore snapshotStore = new SnapshotStore() {
+            @Override
+            public Mono<StoredUser> load(final String userName) {
+                return TEST_USER.equals(userName) ? Mono.just(storedUser) : Mono.empty();
+            }
+
+            @Override
+            public void save(final StoredUser user) {
+                saved.add(user);
+            }
+        };
+        GithubService restartedService = serviceWithProperties(
+                Map.of("service.github.refresh.refresh-after", "0s"), snapshotStore);
+        when(githubClient.makeRequestForUserRepos(TEST_USER))
+                .thenReturn(Flux.just(new RepositoryDto(TEST_REPO, false, pushedAt)));
+
+        // When
+        List<RepositoryResponseDto> result = restartedService.fetchUserRepositoriesWithBranches(TEST_USER)
+                .collectList().block();
+
+        // Then
+        assertThat(result).singleElement().satisfies(repository -> {
+            assertThat(repository.repositoryName()).isEqualTo(TEST_REPO);
+            assertThat(repository.branches()).containsExactly(new BranchWithShaDto("main", "sha123"));
+        });
+        assertThat(saved).singleElement().satisfies(user -> assertThat(user.repositories())
+                .containsExactly(new StoredUser.Repository(TEST_REPO, pushedAt,
+                        List.of(new BranchWithShaDto("main", "sha123")))));
+        verify(githubClient, never()).makeRequestForBranches(anyString(), anyString());
+    }
+
+    @Test
+    void should_stop_paging_at_the_limit_and_fetch_branches_only_for_returned_repositories() {
+        // Given
+        AtomicInteger repositoriesEmitted = new AtomicInteger();
+        when(githubClient.makeRequestForUserReposPageByPage(TEST_USER, true))
+                .thenReturn(Flux.range(0, 100)
+                        .map(index -> new RepositoryDto("repo" + index, index % 2 == 1))
+                        .doOnNext(repository -> repositoriesEmitted.incrementAndGet()));
+        when(githubClient.makeRequestForBranchesPageByPage(anyString(), anyString()))
+                .thenReturn(Flux.just(new BranchWithCommitsDto("main", new CommitDto("sha123")),
+                        new BranchWithCommitsDto("feature/a", new CommitDto("sha456")),
+                        new BranchWithCommitsDto("feature/b", new CommitDto("sha789"))));
+
+        // When
+        List<RepositoryResponseDto> result = githubService.fetchUserRepositoriesWithBranches(TEST_USER,
+                new RepositoryQuery(false, 1, 2, 1, "feature/")).collectList().block();
+
+        // Then
+        assertThat(result).extracting(RepositoryResponseDto::repositoryName)
+                .containsExactlyInAnyOrder("repo2", "repo4");
+        assertThat(result).allSatisfy(repository -> assertThat(repository.branches())
+                .containsExactly(new BranchWithShaDto("feature/a", "sha456")));
+        assertThat(repositoriesEmitted).hasValue(5);
+        verify(githubClient, times(2)).makeRequestForBranchesPageByPage(anyString(), anyString());
+    }
+
+    @Test
+    void should_stop_listing_branches_once_max_branches_were_taken() {
+        // Given
+        AtomicInteger branchesEmitted = new AtomicInteger();
+        when(githubClient.makeRequestForUserReposPageByPage(TEST_USER, true))
+                .thenReturn(Flux.just(new RepositoryDto(TEST_REPO, false)));
+        when(githubClient.makeRequestForBranchesPageByPage(TEST_USER, TEST_REPO))
+                .thenReturn(Flux.range(0, 1000)
+                        .map(index -> new BranchWithCommitsDto("branch" + index, new CommitDto("sha" + index)))
+                        .doOnNext(branch -> branchesEmitted.incrementAndGet()));
+
+        // When
+        List<RepositoryResponseDto> result = githubService.fetchUserRepositoriesWithBranches(TEST_USER,
+                new RepositoryQuery(false, 0, null, 2, null)).collectList().block();
+
+        // Then
+        assertThat(result).singleElement().satisfies(repository -> assertThat(repository.branches())
+                .extracting(BranchWithShaDto::name)
+                .containsExactly("branch0", "branch1"));
+        assertThat(branchesEmitted).hasValue(2);
+    }
+
+    @Test
+    void should_report_unknown_user_for_zero_limit() {
+        // Given
+        when(githubClient.makeRequestForUserReposPageByPage(TEST_USER, true))
+                .thenReturn(Flux.error(new UserNotFoundException("User not found")));
+
+        // When
+        Flux<RepositoryResponseDto> result = githubService.fetchUserRepositoriesWithBranches(TEST_USER,
+                new RepositoryQuery(false, 0, 0, null, null));
+
+        // Then
+        StepVerifier.create(result)
+                .expectError(UserNotFoundException.class)
+                .verify();
+    }
+
+    @Test
+    void should_project_full_fetch_in_flight_instead_of_listing_again() {
+        // Given
+        when(githubClient.makeRequestForUserRepos(TEST_USER))
+                .thenReturn(Flux.just(new RepositoryDto(TEST_REPO, false), new RepositoryDto("otherRepo", false))
+                        .delayElements(Duration.ofMillis(100)));
+        when(githubClient.makeRequestForBranches(anyString(), anyString()))
+                .thenReturn(Flux.just(new BranchWithCommitsDto("main", new CommitDto("sha123"))));
+        Flux<RepositoryResponseDto> fullFetch = githubService.fetchUserRepositoriesWithBranches(TEST_USER);
+
+        // When
+        Flux<RepositoryResponseDto> projected = githubService.fetchUserRepositoriesWithBranches(TEST_USER,
+                new RepositoryQuery(true, 0, 1, null, null));
+
+        // Then
+        StepVerifier.create(Flux.merge(fullFetch, Mono.delay(Duration.ofMillis(50)).thenMany(projected))
+                        .filter(repository -> repository.branches() == null))
+                .assertNext(repository -> assertThat(repository.repositoryName()).isEqualTo(TEST_REPO))
+                .verifyComplete();
+        verify(githubClient, never()).makeRequestForUserReposPageByPage(anyString(), anyBoolean());
+    }
+
+    @Test
+    void should_return_names_only_without_fetching_branches() {
+        // Given
+        when(githubClient.makeRequestForUserReposPageByPage(TEST_USER, false))
+                .thenReturn(Flux.just(new RepositoryDto(TEST_REPO, false), new RepositoryDto("forked", true)));
+
+        // When
+        Flux<RepositoryResponseDto> result = githubService.fetchUserRepositoriesWithBranches(TEST_USER,
+                new RepositoryQuery(true, 0, null, null, null));
+
+        // Then
+        StepVerifier.create(result)
+                .assertNext(repository -> {
+                    assertThat(repository.repositoryName()).isEqualTo(TEST_REPO);
+                    assertThat(repository.branches()).isNull();
+                })
+                .verifyComplete();
+        verify(githubClient, never()).makeRequestForBranches(anyString(), anyString());
+        verify(githubClient, never()).makeRequestForBranchesPageByPage(anyString(), anyString());
+    }
+
+    @Test
+    void should_admit_every_user_of_a_batch_separately() {
+        // Given
+        GithubService admittingService = serviceWithProperties(Map.of(
+                "service.github.admission.initial-limit", "1",
+                "service.github.admission.min-limit", "1",
+                "service.github.admission.max-queue-size", "0"));
+        when(githubClient.makeRequestForUserRepos(anyString()))
+                .thenReturn(Flux.just(new RepositoryDto(TEST_REPO, false)).delayElements(Duration.ofMillis(100)));
+        when(githubClient.makeRequestForBranches(anyString(), anyString()))
+                .thenReturn(Flux.just(new BranchWithCommitsDto("main", new CommitDto("sha123"))));
+
+        // When
+        List<UserRepositoriesResponseDto> result = admittingService
+                .fetchUsersRepositoriesWithBranches(List.of(TEST_USER, "otherUser"))
+                .collectList().block();
+
+        // Then
+        assertThat(result).filteredOn(user -> user.error() == null)
+                .singleElement()
+                .satisfies(user -> assertThat(user.repositories()).hasSize(1));
+        assertThat(result).filteredOn(user -> user.error() != null)
+                .singleElement()
+                .satisfies(user -> assertThat(user.error().status()).isEqualTo(503));
+    }
+
+    @Test
+    void should_finish_more_concurrent_multi_page_users_than_rate_limit_permits() {
+        // Given
+        GithubProperties githubProperties = new Binder(new MapConfigurationPropertySource(Map.of(
+                "service.github.rate-limit.max-concurrency", "2")))
+                .bindOrCreate("service.github", GithubProperties.class);
+        RateLimitScheduler scheduler = new RateLimitScheduler(githubProperties.rateLimit(), meterRegistry);
+        WebClient webClient = WebClient.builder()
+                .baseUrl("http://localhost")
+                .exchangeFunction(GithubServiceTest::multiPageGithub)
+                .filter(scheduler)
+                .build();
+        GithubService pagingService = new GithubService(new GithubClientWebFluxImpl(webClient, githubProperties),
+                scheduler, new FetchMetrics(meterRegistry),
+                new AdmissionControl(githubProperties.admission(), meterRegistry), githubProperties,
+                SnapshotStore.DISABLED);
+        List<String> userNames = IntStream.rangeClosed(1, 3).mapToObj(i -> "pagedUser" + i).toList();
+
+        // When
+        Flux<UserRepositoriesResponseDto> result = pagingService.fetchUsersRepositoriesWithBranches(userNames);
+
+        // Then
+        StepVerifier.create(result)
+                .recordWith(ArrayList::new)
+                .expectNextCount(userNames.size())
+                .consumeRecordedWith(users -> assertThat(users).allSatisfy(user -> {
+                    assertThat(user.error()).isNull();
+                    assertThat(user.repositories()).hasSize(2 * SOURCES_PER_PAGE);
+                }))
+                .expectComplete()
+                .verify(Duration.ofSeconds(5));
+        assertThat(scheduler.inFlight()).isZero();
+    }
+
+    @Test
+    void should_fan_out_branch_calls_on_virtual_threads_and_skip_unchanged_repositories_with_blocking_client() {
+        // Given
+        Instant pushedAt = Instant.parse("2024-06-01T07:59:00Z");
+        BlockingGithubClient blockingClient = mock(BlockingGithubClient.class);
+        GithubService blockingService = serviceWithClient(blockingClient);
+        when(blockingClient.fetchUserRepos(TEST_USER, TEST_USER))
+                .thenReturn(List.of(new RepositoryDto(TEST_REPO, false, pushedAt),
+                        new RepositoryDto("otherRepo", false, pushedAt), new RepositoryDto("forkedRepo", true)));
+        List<Boolean> virtualThreadCalls = new CopyOnWriteArrayList<>();
+        when(blockingClient.fetchBranches(anyString(), anyString(), anyString())).thenAnswer(invocation -> {
+            virtualThreadCalls.add(Thread.currentThread().isVirtual());
+            return List.of(new BranchWithCommitsDto("main", new CommitDto("sha123")));
+        });
+
+        // When
+        List<RepositoryResponseDto> first = blockingService.fetchUserRepositoriesWithBranches(TEST_USER)
+                .collectList().block();
+        List<RepositoryResponseDto> second = blockingService.fetchUserRepositoriesWithBranches(TEST_USER)
+                .collectList().block();
+
+        // Then
+        assertThat(first).extracting(RepositoryResponseDto::repositoryName)
+                .containsExactlyInAnyOrder(TEST_REPO, "otherRepo");
+        assertThat(second).hasSize(2).allSatisfy(repository -> assertThat(repository.branches())
+                .containsExactly(new BranchWithShaDto("main", "sha123")));
+        assertThat(virtualThreadCalls).containsExactly(true, true);
+        assertThat(meterRegistry.get("github.fanout.branch.calls.skipped").counter().count()).isEqualTo(2);
+        verify(blockingClient, never()).makeRequestForUserRepos(anyString());
+        verify(blockingClient, never()).makeRequestForBranches(anyString(), anyString());
+    }
+
+    private GithubService serviceWithProperties(final Map<String, String> properties) {
+        return serviceWithProperties(properties, SnapshotStore.DISABLED);
+    }
+
+    private GithubService serviceWithClient(final GithubClient client) {
+        GithubProperties githubProperties = Binder.get(new StandardEnvironment())
+                .bindOrCreate("service.github", GithubProperties.class);
+        return new GithubService(client, rateLimitScheduler, new FetchMetrics(meterRegistry),
+                new AdmissionControl(githubProperties.admission(), meterRegistry), githubProperties,
+                SnapshotStore.DISABLED);
+    }
+
+    private GithubService serviceWithProperties(final Map<String, String> properties,
+                                                final SnapshotStore snapshotStore) {
+        GithubProperties githubProperties = new Binder(new MapConfigurationPropertySource(properties))
+                .bindOrCreate("service.github", GithubProperties.class);
+        return new GithubService(githubClient, rateLimitScheduler, new FetchMetrics(meterRegistry),
+                new AdmissionControl(githubProperties.admission(), meterRegistry), githubProperties, snapshotStore);
+    }
+
+    private static Mono<ClientResponse> multiPageGithub(final ClientRequest request) {
+        String path = request.url().getPath();
+        if (path.endsWith("/branches")) {
+            return Mono.just(jsonResponse(new HttpHeaders(),
+                    "{\"name\":\"main\",\"commit\":{\"sha\":\"sha123\"}}"))
+                    .publishOn(Schedulers.parallel());
+        }
+        String page = UriComponentsBuilder.fromUri(request.url()).build().getQueryParams().getFirst("page");
+        HttpHeaders headers = new HttpHeaders();
+        headers.add(HttpHeaders.LINK, "<http://localhost" + path + "?per_page=100&page=2>; rel=\"last\"");
+        return Mono.just(jsonResponse(headers, IntStream.range(0, REPOSITORIES_PER_PAGE)
+                .mapToObj(i -> "{\"name\":\"repo" + page + "-" + i + "\",\"fork\":" + (i >= SOURCES_PER_PAGE) + "}")
+                .toArray(String[]::new)))
+                .delayElement(Duration.ofMillis(10));
+    }
+
+    /**
+     * Emits every element in a buffer of its own, so a body of more elements than the decoder prefetches is only
+     * complete once the caller has read most of it.
+     */
+    private static ClientResponse jsonResponse(final HttpHeaders headers, final String... elements) {
+        Flux<DataBuffer> body = Flux.range(0, elements.length)
+                .map(i -> (i == 0 ? "[" : ",") + elements[i])
+                .concatWith(Flux.just("]"))
+                .map(chunk -> DefaultDataBufferFactory.sharedInstance.wrap(chunk.getBytes(StandardCharsets.UTF_8)));
+        return ClientResponse.create(HttpStatus.OK)
+                .headers(responseHeaders -> responseHeaders.addAll(headers))
+                .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                .body(body)
+                .build();
+    }
+}